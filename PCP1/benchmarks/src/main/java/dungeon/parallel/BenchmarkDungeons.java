@@ -0,0 +1,36 @@
+package dungeon.parallel;
+
+import java.util.Random;
+
+/**
+ * BenchmarkDungeons.java
+ *
+ * Builds dungeons and search arrays for the benchmarks exactly the way
+ * DungeonHunterParallel.main does, so benchmark inputs match real runs.
+ */
+final class BenchmarkDungeons {
+
+    static final int SEED = 100;  // seed used for the appendix runs
+
+    private BenchmarkDungeons() {}
+
+    static DungeonMapParallel map(int gateSize) {
+        return new DungeonMapParallel(-gateSize, gateSize, -gateSize, gateSize, SEED);
+    }
+
+    static int numSearches(int gateSize, double density) {
+        return (int) (density * (gateSize * 2) * (gateSize * 2) * DungeonMapParallel.RESOLUTION);
+    }
+
+    // Same seeded start positions as DungeonHunterParallel.main
+    static HuntParallel[] searches(DungeonMapParallel dungeon, int numSearches) {
+        Random rand = new Random(SEED);
+        HuntParallel[] searches = new HuntParallel[numSearches];
+        for (int i = 0; i < numSearches; i++) {
+            int r = rand.nextInt(dungeon.getRows());
+            int c = rand.nextInt(dungeon.getColumns());
+            searches[i] = new HuntParallel(i + 1, r, c, dungeon);
+        }
+        return searches;
+    }
+}
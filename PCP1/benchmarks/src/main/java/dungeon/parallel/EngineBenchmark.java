@@ -0,0 +1,72 @@
+package dungeon.parallel;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * EngineBenchmark.java
+ *
+ * Whole hunts through each HuntEngine (the --engine choices of
+ * DungeonHunterParallel) on a fresh dungeon per invocation, with the
+ * start positions streamed from each SearchSource (--starts).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class EngineBenchmark {
+
+    @Param({"100", "200"})
+    int gateSize;
+
+    @Param({"0.2"})
+    double density;
+
+    @Param({"1", "4", "8"})
+    int threads;
+
+    @Param({"forkjoin", "virtual", "fixed", "region"})
+    String engine;
+
+    @Param({"legacy", "keyed"})
+    String starts;
+
+    private HuntEngine huntEngine;
+    private SearchSource searches;
+
+    // A fresh dungeon (and an engine for it) for every hunt, built outside the measurement
+    @Setup(Level.Invocation)
+    public void newDungeon() {
+        HuntOptions options = new HuntOptions();
+        options.engine = engine;
+        options.threads = threads;
+        options.starts = starts;
+        DungeonMapParallel dungeon = BenchmarkDungeons.map(gateSize);
+        searches = SearchSource.create(options, dungeon, BenchmarkDungeons.numSearches(gateSize, density), BenchmarkDungeons.SEED);
+        huntEngine = HuntEngine.create(options, dungeon);
+    }
+
+    @TearDown(Level.Invocation)
+    public void stopEngine() {
+        huntEngine.close();
+    }
+
+    @Benchmark
+    public int[] run() {
+        return huntEngine.run(searches);
+    }
+}
@@ -0,0 +1,94 @@
+package dungeon.parallel;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * HuntBenchmark.java
+ *
+ * Whole hunts on a fresh dungeon per invocation (the part of a run that
+ * DungeonHunterParallel times):
+ *  huntTask:     the Fork/Join HuntTask reduction on a pool of `threads`,
+ *                with a fixed or adaptive (auto) split `threshold`
+ *  hunterStore:  huntTask with the hunters kept in a HunterStore
+ *  findManaPeak: the same searches run one after another on one thread
+ * Compare with dungeon.sequential.SequentialHuntBenchmark for speedups.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class HuntBenchmark {
+
+    @Param({"50", "100", "200"})
+    int gateSize;
+
+    @Param({"0.05", "0.2"})
+    double density;
+
+    @Param({"1", "2", "4", "8"})
+    int threads;
+
+    @Param({"auto", "4", "16", "64", "256"})
+    String threshold;
+
+    private ForkJoinPool pool;
+    private DungeonMapParallel dungeon;
+    private HuntParallel[] searches;
+
+    @Setup(Level.Trial)
+    public void startPool() {
+        pool = new ForkJoinPool(threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopPool() {
+        pool.shutdown();
+    }
+
+    // A fresh dungeon for every hunt, built outside the measurement
+    @Setup(Level.Invocation)
+    public void newDungeon() {
+        dungeon = BenchmarkDungeons.map(gateSize);
+        searches = BenchmarkDungeons.searches(dungeon, BenchmarkDungeons.numSearches(gateSize, density));
+    }
+
+    private TaskGranularity granularity() {
+        return threshold.equals("auto")
+                ? TaskGranularity.auto(searches.length, pool.getParallelism())
+                : TaskGranularity.fixed(Integer.parseInt(threshold));
+    }
+
+    @Benchmark
+    public int[] huntTask() {
+        return pool.invoke(new ForkJoinHuntEngine.HuntTask(SearchSource.of(searches), 0, searches.length, granularity()));
+    }
+
+    @Benchmark
+    public int[] hunterStore() {
+        HunterStore hunters = new HunterStore(dungeon, SearchSource.of(searches));
+        return pool.invoke(new ForkJoinHuntEngine.HuntTask(hunters, 0, searches.length, granularity()));
+    }
+
+    @Benchmark
+    public int findManaPeak() {
+        int max = Integer.MIN_VALUE;
+        for (HuntParallel search : searches) max = Math.max(max, search.findManaPeak());
+        return max;
+    }
+}
@@ -0,0 +1,88 @@
+package dungeon.parallel;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * ManaLevelBenchmark.java
+ *
+ * Cost of DungeonMapParallel.getManaLevel per cell, counting into a
+ * HuntCounters cell claimed up front as a climb does.
+ *  cold: the cell has never been computed, so the mana formula runs.
+ *        Each invocation evaluates the next COLD_BATCH cells of a fresh
+ *        map; when the map is used up a new one is built (amortised to
+ *        about one array fill per cell).
+ *  warm: the cell is cached (map precomputed), random cells are read.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class ManaLevelBenchmark {
+
+    private static final int COLD_BATCH = 64;
+    private static final int PROBES = 1 << 12;
+
+    @Param({"100", "300"})
+    int gateSize;
+
+    private DungeonMapParallel cold;
+    private HuntCounters.Cell coldCounts;
+    private long coldCell;
+    private DungeonMapParallel warm;
+    private HuntCounters.Cell warmCounts;
+    private final int[] probeX = new int[PROBES];
+    private final int[] probeY = new int[PROBES];
+    private int probe;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        warm = BenchmarkDungeons.map(gateSize);
+        warm.precomputeMana();
+        warmCounts = warm.getCounters().acquire();
+        Random rand = new Random(BenchmarkDungeons.SEED);
+        for (int i = 0; i < PROBES; i++) {
+            probeX[i] = rand.nextInt(warm.getRows());
+            probeY[i] = rand.nextInt(warm.getColumns());
+        }
+        cold = BenchmarkDungeons.map(gateSize);
+        coldCounts = cold.getCounters().acquire();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(COLD_BATCH)
+    public void coldCells(Blackhole bh) {
+        int columns = cold.getColumns();
+        long cells = (long) cold.getRows() * columns;
+        if (coldCell + COLD_BATCH > cells) {
+            cold = BenchmarkDungeons.map(gateSize);
+            coldCounts = cold.getCounters().acquire();
+            coldCell = 0;
+        }
+        for (int i = 0; i < COLD_BATCH; i++, coldCell++) {
+            bh.consume(cold.getManaLevel((int) (coldCell / columns), (int) (coldCell % columns), coldCounts));
+        }
+    }
+
+    @Benchmark
+    public int warmCells() {
+        int i = probe++ & (PROBES - 1);
+        return warm.getManaLevel(probeX[i], probeY[i], warmCounts);
+    }
+}
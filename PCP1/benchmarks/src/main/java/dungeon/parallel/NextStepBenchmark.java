@@ -0,0 +1,70 @@
+package dungeon.parallel;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * NextStepBenchmark.java
+ *
+ * Cost of one hill-climbing step decision, DungeonMapParallel
+ * .getNextStep / getNextStepDirection, on a precomputed map (all probes
+ * are cache hits, so this isolates the neighbour scan itself). nextStep
+ * counts into a HuntCounters cell claimed up front, as a climb does;
+ * nextStepDirection is the convenience call, which claims one per step.
+ * Run with -prof gc to confirm the scan allocates nothing per step.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = {"--add-modules", "jdk.incubator.vector"})
+public class NextStepBenchmark {
+
+    private static final int PROBES = 1 << 12;
+
+    @Param({"100"})
+    int gateSize;
+
+    private DungeonMapParallel dungeon;
+    private HuntCounters.Cell counts;
+    private final int[] probeX = new int[PROBES];
+    private final int[] probeY = new int[PROBES];
+    private int probe;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        dungeon = BenchmarkDungeons.map(gateSize);
+        dungeon.precomputeMana();
+        counts = dungeon.getCounters().acquire();
+        Random rand = new Random(BenchmarkDungeons.SEED);
+        for (int i = 0; i < PROBES; i++) {
+            probeX[i] = rand.nextInt(dungeon.getRows());
+            probeY[i] = rand.nextInt(dungeon.getColumns());
+        }
+    }
+
+    @Benchmark
+    public int nextStep() {
+        int i = probe++ & (PROBES - 1);
+        return dungeon.getNextStep(probeX[i], probeY[i], counts);
+    }
+
+    @Benchmark
+    public Object nextStepDirection() {
+        int i = probe++ & (PROBES - 1);
+        return dungeon.getNextStepDirection(probeX[i], probeY[i]);
+    }
+}
@@ -0,0 +1,59 @@
+package dungeon.sequential;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * SequentialHuntBenchmark.java
+ *
+ * Baseline: the reference sequential DungeonHunter search loop over the
+ * same gateSize/density grid (and seed) as dungeon.parallel.HuntBenchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SequentialHuntBenchmark {
+
+    private static final int SEED = 100;
+
+    @Param({"50", "100", "200"})
+    int gateSize;
+
+    @Param({"0.05", "0.2"})
+    double density;
+
+    private Hunt[] searches;
+
+    // Same construction as DungeonHunter.main, outside the measurement
+    @Setup(Level.Invocation)
+    public void newDungeon() {
+        DungeonMap dungeon = new DungeonMap(-gateSize, gateSize, -gateSize, gateSize, SEED);
+        int numSearches = (int) (density * (gateSize * 2) * (gateSize * 2) * DungeonMap.RESOLUTION);
+        Random rand = new Random(SEED);
+        searches = new Hunt[numSearches];
+        for (int i = 0; i < numSearches; i++)
+            searches[i] = new Hunt(i + 1, rand.nextInt(dungeon.getRows()), rand.nextInt(dungeon.getColumns()), dungeon);
+    }
+
+    @Benchmark
+    public int hunt() {
+        int max = Integer.MIN_VALUE;
+        for (Hunt search : searches) max = Math.max(max, search.findManaPeak());
+        return max;
+    }
+}
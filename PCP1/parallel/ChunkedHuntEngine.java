@@ -0,0 +1,51 @@
+/**
+ * ChunkedHuntEngine.java
+ *
+ * Shared part of the executor-based engines: cut the search range into
+ * contiguous chunks, submit one task per chunk, and reduce the chunk
+ * results in index order once all of them have completed.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+abstract class ChunkedHuntEngine implements HuntEngine {
+
+    protected final ExecutorService executor;
+
+    protected ChunkedHuntEngine(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    // Number of searches per submitted task for a run of numSearches
+    protected abstract int chunkSize(int numSearches);
+
+    @Override
+    public int[] run(SearchSource searches) {
+        int numSearches = searches.size();
+        int chunk = Math.max(1, chunkSize(numSearches));
+        List<Future<int[]>> futures = new ArrayList<>();
+        for (int lo = 0; lo < numSearches; lo += chunk) {
+            final int from = lo, to = Math.min(numSearches, lo + chunk);
+            futures.add(executor.submit(() -> HuntEngine.huntRange(searches, from, to)));
+        }
+        int[] best = {Integer.MIN_VALUE, -1, -1, -1};
+        try {
+            for (Future<int[]> f : futures) best = HuntEngine.better(best, f.get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Hunt interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Hunt failed", e.getCause());
+        }
+        return best;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,406 @@
+/**
+ * DistributedHunt.java
+ *
+ * Coordinator/worker mode: one hunt spread over several JVMs, on one host
+ * or several. The coordinator cuts the search index range into one
+ * contiguous share per worker and sends each worker the run's command
+ * line and its share over a TCP socket. Every worker builds its own
+ * DungeonMapParallel from the same seed (so no map is ever shipped), hunts
+ * its share with the usual engine, and sends back only its local best and
+ * timings. The coordinator reduces the results with the usual rule
+ * (highest mana, then lowest search index) and prints the report.
+ *
+ *   java DungeonHunterParallel <gridSize> <numSearchesFactor> <randomSeed>
+ *        --coordinator <port> --workers <n> [--spawn] [other flags]
+ *   java DungeonHunterParallel --worker <host>:<port>
+ *
+ * --spawn starts the n workers as local child JVMs, on the same java and
+ * class path (port 0 then picks any free port). Otherwise workers started
+ * by hand connect to the coordinator's port. A seed of 0 (unseeded) is
+ * replaced by a random seed so all workers agree on the dungeon.
+ *
+ * Workers do not see each other's visited cells, so a hunter only stops
+ * on paths walked in its own JVM. The peak found is the same or better,
+ * but the evaluation count (summed over workers) is higher than in one
+ * JVM. A --deadline is applied by every worker to its own share, and the
+ * report adds up the searches the workers completed and skipped.
+ * --prune also works per worker: a worker skips the rest of its share
+ * once it can certify that its own best is the peak of the whole dungeon,
+ * so the workers whose hunters reach the peak stop early and the others
+ * run their whole share.
+ *
+ * Each worker line of the report splits the time the coordinator waited
+ * on it into setup, hunt and the rest: connection, protocol and
+ * (de)serialisation overhead.
+ *
+ * Flags that write files or reports of one process (--jfr, --checkpoint,
+ * --resume, --tiles, --metrics, --progress and their options) are not
+ * sent to the workers, so local workers never write the same paths. A --jfr
+ * recording covers the coordinator only; the others are ignored.
+ *
+ * Protocol (DataOutputStream, big-endian):
+ *   coordinator -> worker: PROTOCOL, worker number, argument count,
+ *                          arguments (UTF), share start, share end
+ *   worker -> coordinator: mana, search index, row, column, x, y, rows,
+ *                          columns, evaluated, setup ns, hunt ns, searches
+ *                          completed, searches skipped, deadline reached,
+ *                          certified, pruned searches, checks, cells checked
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class DistributedHunt {
+
+    static final int PROTOCOL = 3;
+    static final int RESULT_BYTES = 4 * 4 + 8 * 2 + 4 * 2 + 8 * 3 + 8 * 2 + 1 + 1 + 8 * 3;
+    static final int ACCEPT_TIMEOUT_MS = 60_000;
+
+    // One worker's share and what it sent back
+    static final class WorkerResult {
+        int worker, from, to;
+        int mana, index, row, col;
+        double x, y;
+        int rows, columns;
+        long evaluated, setupNanos, huntNanos;
+        long completed, skipped;  // under a --deadline; otherwise every search of the share completed
+        boolean expired;
+        boolean certified;  // under --prune: the searches below were skipped by the certificate
+        long pruned, checks, cellsChecked;
+        long connectNanos, roundTripNanos, bytesSent;
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(mana);
+            out.writeInt(index);
+            out.writeInt(row);
+            out.writeInt(col);
+            out.writeDouble(x);
+            out.writeDouble(y);
+            out.writeInt(rows);
+            out.writeInt(columns);
+            out.writeLong(evaluated);
+            out.writeLong(setupNanos);
+            out.writeLong(huntNanos);
+            out.writeLong(completed);
+            out.writeLong(skipped);
+            out.writeBoolean(expired);
+            out.writeBoolean(certified);
+            out.writeLong(pruned);
+            out.writeLong(checks);
+            out.writeLong(cellsChecked);
+        }
+
+        void read(DataInputStream in) throws IOException {
+            mana = in.readInt();
+            index = in.readInt();
+            row = in.readInt();
+            col = in.readInt();
+            x = in.readDouble();
+            y = in.readDouble();
+            rows = in.readInt();
+            columns = in.readInt();
+            evaluated = in.readLong();
+            setupNanos = in.readLong();
+            huntNanos = in.readLong();
+            completed = in.readLong();
+            skipped = in.readLong();
+            expired = in.readBoolean();
+            certified = in.readBoolean();
+            pruned = in.readLong();
+            checks = in.readLong();
+            cellsChecked = in.readLong();
+        }
+
+        // Time the coordinator waited on this worker beyond its setup and hunt
+        long overheadNanos() {
+            return Math.max(0, roundTripNanos - setupNanos - huntNanos);
+        }
+    }
+
+    // Coordinator: hand out the shares, reduce and report
+    static void coordinate(String[] args, HuntOptions options, int gateSize, int numSearches, int randomSeed)
+            throws IOException {
+        if (randomSeed == 0) randomSeed = 1 + new Random().nextInt(Integer.MAX_VALUE - 1);
+        if (options.checkpoint != null || options.resume != null || options.tiles != null || options.metrics != null
+                || options.progressMillis > 0)
+            System.err.println("--checkpoint, --resume, --tiles, --metrics and --progress apply to single-JVM hunts only, ignoring them.");
+        // Workers on the region engine climb past SearchSource.hunt and run every search
+        boolean region = options.engine.equals("region");
+        long deadline = region ? 0 : options.deadlineMillis;
+        if (options.deadlineMillis > 0 && region)
+            System.err.println("The region engine has no deadline or progress lines, running every search.");
+        if (options.prune && region) System.err.println("The region engine does not prune, running every search.");
+        String[] job = jobArguments(args, randomSeed, options);
+        int workers = options.workers;
+        List<Process> spawned = new ArrayList<>();
+        WorkerResult[] results = new WorkerResult[workers];
+        long huntTime;
+        boolean completed = false;
+
+        try (ServerSocket server = new ServerSocket(options.coordinatorPort, workers)) {
+            server.setSoTimeout(ACCEPT_TIMEOUT_MS);
+            if (options.spawn) spawned = spawnWorkers(workers, server.getLocalPort());
+            else System.out.printf("Waiting for %d workers on port %d\n", workers, server.getLocalPort());
+
+            long start = System.nanoTime();
+            Socket[] sockets = new Socket[workers];
+            long[] connected = new long[workers];
+            for (int w = 0; w < workers; w++) {
+                sockets[w] = server.accept();
+                connected[w] = System.nanoTime() - start;
+            }
+
+            // Send every share at once and collect the replies as they arrive
+            ExecutorService io = Executors.newFixedThreadPool(workers);
+            long dispatch = System.nanoTime();
+            try {
+                List<Future<WorkerResult>> futures = new ArrayList<>();
+                for (int w = 0; w < workers; w++) {
+                    final int worker = w;
+                    final int from = (int) ((long) numSearches * w / workers);
+                    final int to = (int) ((long) numSearches * (w + 1) / workers);
+                    futures.add(io.submit(() -> exchange(sockets[worker], job, worker, from, to)));
+                }
+                for (int w = 0; w < workers; w++) {
+                    results[w] = futures.get(w).get();
+                    results[w].connectNanos = connected[w];
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while waiting for workers", e);
+            } catch (ExecutionException e) {
+                throw new IOException("Worker failed: " + e.getCause().getMessage(), e.getCause());
+            } finally {
+                io.shutdown();
+            }
+            huntTime = System.nanoTime() - dispatch;
+            completed = true;
+        } finally {
+            for (Process p : spawned) {
+                if (!completed) p.destroy();  // don't leave workers waiting on a failed run
+                try {
+                    p.waitFor();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    p.destroy();
+                }
+            }
+        }
+        report(results, gateSize, numSearches, huntTime, deadline, options.prune && !region);
+    }
+
+    // The command line for the workers: the coordinator's, without the coordinator flags
+    // and the per-process output flags (and --mana-cache if the driver dropped it)
+    static String[] jobArguments(String[] args, int randomSeed, HuntOptions options) {
+        List<String> job = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--coordinator":
+                case "--workers":
+                case "--jfr":
+                case "--checkpoint":
+                case "--checkpoint-interval":
+                case "--resume":
+                case "--tiles":
+                case "--tile-levels":
+                case "--metrics":
+                case "--progress":
+                    i++;  // skip the value too
+                    break;
+                case "--mana-cache":
+                    if (options.manaCache == null) i++;
+                    else job.add(args[i]);
+                    break;
+                case "--spawn":
+                case "--checkpoint-compress":
+                    break;
+                default:
+                    job.add(args[i]);
+            }
+        }
+        job.set(2, Integer.toString(randomSeed));
+        return job.toArray(new String[0]);
+    }
+
+    private static List<Process> spawnWorkers(int count, int port) throws IOException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        if (ManaFunction.vectorAvailable()) {
+            command.add("--add-modules");
+            command.add("jdk.incubator.vector");
+        }
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add("DungeonHunterParallel");
+        command.add("--worker");
+        command.add("127.0.0.1:" + port);
+        List<Process> processes = new ArrayList<>();
+        for (int w = 0; w < count; w++) processes.add(new ProcessBuilder(command).inheritIO().start());
+        return processes;
+    }
+
+    // Send one worker its share and wait for its result
+    private static WorkerResult exchange(Socket socket, String[] job, int worker, int from, int to) throws IOException {
+        try (Socket s = socket;
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+             DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()))) {
+            long sent = System.nanoTime();
+            out.writeInt(PROTOCOL);
+            out.writeInt(worker);
+            out.writeInt(job.length);
+            for (String arg : job) out.writeUTF(arg);
+            out.writeInt(from);
+            out.writeInt(to);
+            out.flush();
+
+            WorkerResult result = new WorkerResult();
+            result.read(in);
+            result.roundTripNanos = System.nanoTime() - sent;
+            result.bytesSent = out.size();
+            result.worker = worker;
+            result.from = from;
+            result.to = to;
+            return result;
+        }
+    }
+
+    private static void report(WorkerResult[] results, int gateSize, int numSearches, long huntTime, long deadline,
+                               boolean prune) {
+        WorkerResult best = null;
+        long evaluated = 0, completed = 0, skipped = 0, pruned = 0, checks = 0, cellsChecked = 0;
+        int expired = 0, certified = 0;
+        for (WorkerResult r : results) {
+            evaluated += r.evaluated;
+            completed += r.completed;
+            skipped += r.skipped;
+            if (r.expired) expired++;
+            pruned += r.pruned;
+            checks += r.checks;
+            cellsChecked += r.cellsChecked;
+            if (r.certified) certified++;
+            if (r.index < 0) continue;
+            if (best == null || r.mana > best.mana || (r.mana == best.mana && r.index < best.index)) best = r;
+        }
+        int rows = results[0].rows, columns = results[0].columns;
+
+        System.out.printf("\t dungeon size: %d,\n", gateSize);
+        System.out.printf("\t rows: %d, columns: %d\n", rows, columns);
+        System.out.printf("\t x: [%f, %f], y: [%f, %f]\n", (double) -gateSize, (double) gateSize,
+                (double) -gateSize, (double) gateSize);
+        System.out.printf("\t Number searches: %d\n", numSearches);
+        System.out.printf("\t workers: %d\n", results.length);
+
+        System.out.printf("\n\t time: %d ms\n", huntTime / 1_000_000);
+        System.out.printf("\tnumber dungeon grid points evaluated: %d  (%2.0f%s, summed over workers)\n",
+                evaluated, (evaluated * 1.0 / ((double) rows * columns)) * 100.0, "%");
+        for (WorkerResult r : results) {
+            System.out.printf("\tworker %d: searches [%d, %d), connect %d ms, setup %d ms, hunt %d ms, "
+                            + "round trip %d ms, overhead %d ms (%d bytes sent, %d received)\n",
+                    r.worker, r.from, r.to, r.connectNanos / 1_000_000, r.setupNanos / 1_000_000,
+                    r.huntNanos / 1_000_000, r.roundTripNanos / 1_000_000, r.overheadNanos() / 1_000_000,
+                    r.bytesSent, RESULT_BYTES);
+        }
+        if (prune) {
+            System.out.printf("\tpruning: certified by %d of %d workers, %d searches skipped, %d checks over %d cells\n",
+                    certified, results.length, pruned, checks, cellsChecked);
+        }
+        if (expired > 0) {
+            System.out.printf("\tdeadline: %d ms per worker, reached by %d of %d workers; searches completed: %d of %d (%.1f%s), %d skipped\n",
+                    deadline, expired, results.length, completed, numSearches,
+                    completed * 100.0 / Math.max(1, numSearches), "%", skipped);
+        } else if (deadline > 0) {
+            System.out.printf("\tdeadline: %d ms per worker, not reached; all %d searches completed\n", deadline, numSearches);
+        }
+
+        if (best != null) {
+            System.out.printf("Dungeon Master (mana %d) found at:  ", best.mana);
+            System.out.printf("x=%.1f y=%.1f\n\n", best.x, best.y);
+        } else {
+            System.out.println("No finder (no searches ran)");
+        }
+    }
+
+    // Worker: connect, hunt the share we are given, send back the local best
+    static void work(String address) throws IOException {
+        int colon = address.lastIndexOf(':');
+        if (colon < 0) throw new IllegalArgumentException("Worker address must be host:port.");
+        String host = address.substring(0, colon);
+        int port = Integer.parseInt(address.substring(colon + 1));
+
+        try (Socket s = new Socket(host, port);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(s.getOutputStream()));
+             DataInputStream in = new DataInputStream(new BufferedInputStream(s.getInputStream()))) {
+            if (in.readInt() != PROTOCOL) throw new IOException("Coordinator speaks another protocol version.");
+            in.readInt();  // worker number
+            String[] args = new String[in.readInt()];
+            for (int i = 0; i < args.length; i++) args[i] = in.readUTF();
+            int from = in.readInt();
+            int to = in.readInt();
+
+            // Build the same dungeon and start positions as the coordinator's command line describes
+            long start = System.nanoTime();
+            int gateSize = Integer.parseInt(args[0]);
+            int numSearches = (int) (Double.parseDouble(args[1]) * (gateSize * 2) * (gateSize * 2) * DungeonMapParallel.RESOLUTION);
+            int randomSeed = Integer.parseInt(args[2]);
+            HuntOptions options = HuntOptions.parse(args, 3);
+            DungeonMapParallel dungeon = new DungeonMapParallel(-gateSize, gateSize, -gateSize, gateSize, randomSeed, options);
+            SearchSource share = SearchSource.range(SearchSource.create(options, dungeon, numSearches, randomSeed), from, to);
+            ManaPruner pruner = options.prune && !options.engine.equals("region") ? new ManaPruner(dungeon, share) : null;
+            if (pruner != null) share = pruner;
+            HuntProgress budget = options.deadlineMillis > 0 && !options.engine.equals("region") ? new HuntProgress(dungeon, share, options.deadlineMillis, 0) : null;
+            if (budget != null) share = budget;
+            HuntEngine engine = HuntEngine.create(options, dungeon);
+            if (options.precompute) dungeon.precomputeMana();
+            long setup = System.nanoTime() - start;
+
+            int[] best;
+            long huntStart = System.nanoTime();
+            if (budget != null) budget.start();
+            try {
+                best = engine.run(share);
+            } finally {
+                if (budget != null) budget.stop();
+                engine.close();
+            }
+
+            WorkerResult result = new WorkerResult();
+            result.huntNanos = System.nanoTime() - huntStart;
+            result.setupNanos = setup;
+            result.mana = best[0];
+            result.index = best[1] >= 0 ? from + best[1] : -1;
+            result.row = best[2];
+            result.col = best[3];
+            if (best[1] >= 0) {
+                result.x = dungeon.getXcoord(best[2]);
+                result.y = dungeon.getYcoord(best[3]);
+            }
+            result.rows = dungeon.getRows();
+            result.columns = dungeon.getColumns();
+            result.evaluated = dungeon.getGridPointsEvaluated();
+            result.completed = budget != null ? budget.getCompleted() : to - from;
+            result.skipped = budget != null ? budget.getSkipped() : 0;
+            result.expired = budget != null && budget.isExpired();
+            if (pruner != null) {
+                result.certified = pruner.isCertified();
+                result.pruned = pruner.getSkipped();
+                result.checks = pruner.getChecks();
+                result.cellsChecked = pruner.getCellsChecked();
+            }
+            result.write(out);
+            out.flush();
+        }
+    }
+}
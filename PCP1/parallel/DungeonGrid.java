@@ -0,0 +1,39 @@
+/**
+ * DungeonGrid.java
+ *
+ * Storage abstraction for the per-cell state of a DungeonMapParallel:
+ * the cached (fixed-point) mana value and the id of the hunter that
+ * visited the cell. DungeonMapParallel, HuntParallel and the image
+ * output only talk to the grid through this interface, so the backing
+ * layout can change without touching the hunt code.
+ */
+
+public interface DungeonGrid {
+
+    // Sentinel values for cells that have not been computed / visited yet
+    int UNCOMPUTED = Integer.MIN_VALUE;
+    int UNVISITED = -1;
+
+    int getRows();
+
+    int getColumns();
+
+    // Cached mana value of a cell, or UNCOMPUTED
+    int getMana(int x, int y);
+
+    void setMana(int x, int y, int value);
+
+    // Id of the hunter that visited a cell, or UNVISITED
+    int getVisitor(int x, int y);
+
+    void setVisitor(int x, int y, int id);
+
+    // Atomic variants used by the concurrent (CAS) map mode
+    int getManaAcquire(int x, int y);
+
+    void setManaRelease(int x, int y, int value);
+
+    boolean compareAndSetMana(int x, int y, int expected, int value);
+
+    boolean compareAndSetVisitor(int x, int y, int expected, int id);
+}
@@ -1,14 +1,19 @@
 /**
  * DungeonHunterParallel.java
  *
- * Parallel driver using the Fork/Join framework. The program builds the
- * same inputs/output as the serial version and uses a ForkJoinPool to
- * execute multiple HuntParallel tasks in parallel. The starting positions
+ * Parallel driver. The program builds the same inputs/output as the
+ * serial version and hands the HuntParallel searches to a HuntEngine -
+ * by default the Fork/Join engine - to execute them in parallel. The
+ * starting positions
  * are generated deterministically using the same logic as the serial
- * solution (seeded Random) to allow validation.
+ * solution (seeded Random) to allow validation; SeededSearchSource replays
+ * that sequence while the hunt runs instead of building every hunter first.
  *
  * Usage:
- *   java DungeonHunterParallel <gridSize> <numSearchesFactor> <randomSeed>
+ *   java DungeonHunterParallel <gridSize> <numSearchesFactor> <randomSeed> [options]
+ *
+ * See HuntOptions for the optional flags, and DistributedHunt for running
+ * one hunt across several JVMs (--coordinator / --worker).
  *
  * NOTE: numSearchesFactor is the same type of argument as in the serial
  * program: it is multiplied with (gateSize*2)^2*RESOLUTION to produce
@@ -18,9 +23,10 @@
  *         MTHNYI011
  */
 
+import java.io.IOException;
 import java.util.Random;
-import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.CompletableFuture;
+import jdk.jfr.Recording;
 
 public class DungeonHunterParallel {
     static final boolean DEBUG = false;
@@ -31,63 +37,31 @@ public class DungeonHunterParallel {
     private static void tick() { startTime = System.currentTimeMillis(); }
     private static void tock() { endTime = System.currentTimeMillis(); }
 
-    // RecursiveTask that returns int[]{maxValue, finderIndex}
-    // This is the core of the Fork/Join implementation
-    static class HuntTask extends RecursiveTask<int[]> {
-        private static final int THRESHOLD = 16; // chunk size to process sequentially
-        private final HuntParallel[] searches;
-        private final int lo, hi; // range [lo, hi) that this task will handle
-        
-        public HuntTask(HuntParallel[] searches, int lo, int hi) {
-            this.searches = searches;
-            this.lo = lo;
-            this.hi = hi;
-        }
-
-        @Override
-        protected int[] compute() {
-            // If task is small enough, process it sequentially
-            if (hi - lo <= THRESHOLD) {
-                int localMax = Integer.MIN_VALUE;
-                int finder = -1;
-                // Go through each search in assigned range
-                for (int i = lo; i < hi; i++) {
-                    int lm = searches[i].findManaPeak();
-                    // Keep track of which search found the highest mana peak
-                    if (lm > localMax) {
-                        localMax = lm;
-                        finder = i;
-                    }
-                }
-                return new int[]{localMax, finder};
-            } else {
-                // If task is too big, split it in half using Fork/Join
-                int mid = lo + (hi - lo) / 2;
-                HuntTask left = new HuntTask(searches, lo, mid);
-                HuntTask right = new HuntTask(searches, mid, hi);
-                left.fork(); // fork the left task to run in parallel
-                int[] rightRes = right.compute(); // compute the right task directly
-                int[] leftRes = left.join(); // wait for the left task to complete
-                // Return the result with the higher mana value
-                if (leftRes[0] >= rightRes[0]) return leftRes;
-                else return rightRes;
-            }
-        }
-    }
-
     public static void main(String[] args) {
         double xmin, xmax, ymin, ymax;
         DungeonMapParallel dungeon;
 
         // Default values for simulation parameters
         int numSearches = 10, gateSize = 10;
-        HuntParallel[] searches;
+        SearchSource searches;
 
-        Random rand = new Random();
         int randomSeed = 0;
+        long searchSeed = new Random().nextLong();  // seed 0: unseeded, like new Random()
+        HuntOptions options = null;
+
+        // Worker JVM of a distributed hunt: everything else comes from the coordinator
+        if (args.length == 2 && args[0].equals("--worker")) {
+            try {
+                DistributedHunt.work(args[1]);
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Error: worker " + args[1] + ": " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
 
         // Validate that the user provided the correct number of arguments
-        if (args.length != 3) {
+        if (args.length < 3) {
             System.out.println("Incorrect number of command line arguments provided.");
             System.exit(0);
         }
@@ -99,7 +73,15 @@ public class DungeonHunterParallel {
             numSearches = (int) (Double.parseDouble(args[1]) * (gateSize * 2) * (gateSize * 2) * DungeonMapParallel.RESOLUTION);
             randomSeed = Integer.parseInt(args[2]);
             if (randomSeed < 0) throw new IllegalArgumentException("Random seed must be non-negative.");
-            else if (randomSeed > 0) rand = new Random(randomSeed);
+            else if (randomSeed > 0) searchSeed = randomSeed;
+            options = HuntOptions.parse(args, 3);
+            if (randomSeed == 0 && (options.checkpoint != null || options.resume != null))
+                throw new IllegalArgumentException("Checkpoints need a random seed greater than 0.");
+            if (randomSeed == 0 && options.manaCache != null) {
+                // A new boss every run: the cache file would never be read again
+                System.err.println("Mana cache not used: it needs a random seed greater than 0.");
+                options.manaCache = null;
+            }
         } catch (NumberFormatException e) {
             System.err.println("Error: All arguments must be numeric.");
             System.exit(1);
@@ -108,6 +90,38 @@ public class DungeonHunterParallel {
             System.exit(1);
         }
 
+        // Flight recording of the whole run; the other modes below dump it when the JVM exits
+        Recording recording = null;
+        if (options.jfr != null) {
+            try {
+                recording = HuntEvents.start(options.jfr);
+            } catch (IOException | IllegalStateException e) {
+                System.err.println("Error: could not start a flight recording: " + e.getMessage());
+                System.exit(1);
+            }
+        }
+
+        // Coordinator of a distributed hunt: the workers build the dungeon and hunt
+        if (options.coordinatorPort >= 0) {
+            try {
+                DistributedHunt.coordinate(args, options, gateSize, numSearches, randomSeed);
+            } catch (IOException e) {
+                System.err.println("Error: " + e.getMessage());
+                System.exit(1);
+            }
+            return;
+        }
+
+        // Coarse-to-fine hunt over several resolutions of the same dungeon
+        if (options.multires != null) {
+            if (options.deadlineMillis > 0 || options.progressMillis > 0 || options.checkpoint != null || options.resume != null
+                    || options.metrics != null || options.prune || options.precompute || options.tiles != null || options.hunterStats)
+                System.err.println("--deadline, --progress, --checkpoint, --resume, --metrics, --prune, --precompute, --tiles and "
+                        + "--hunter-stats apply to single-resolution hunts only, ignoring them.");
+            MultiResolutionHunt.run(options, gateSize, numSearches, randomSeed, searchSeed);
+            return;
+        }
+
         // Set up the coordinate boundaries for dungeon
         xmin = -gateSize;
         xmax = gateSize;
@@ -115,35 +129,100 @@ public class DungeonHunterParallel {
         ymax = gateSize;
 
         // Create dungeon map with the specified parameters
-        dungeon = new DungeonMapParallel(xmin, xmax, ymin, ymax, randomSeed);
+        dungeon = new DungeonMapParallel(xmin, xmax, ymin, ymax, randomSeed, options);
+        if (options.simd && !dungeon.getManaFunction().isVector())
+            System.err.println("jdk.incubator.vector not available, using the scalar mana kernel.");
+
+        Runnable mapStatistics = HuntEvents.watch(dungeon);  // only runs while a recording asks for it
 
         int dungeonRows = dungeon.getRows();
         int dungeonColumns = dungeon.getColumns();
 
-        searches = new HuntParallel[numSearches];
-
-        // Ensure correctness by using the same starting locations as the serial program
-        // Generate starting positions deterministically using a seeded Random
-        for (int i = 0; i < numSearches; i++) {
-            int r = rand.nextInt(dungeonRows);
-            int c = rand.nextInt(dungeonColumns);
-            // Create each hunt with a unique ID and starting position
-            searches[i] = new HuntParallel(i + 1, r, c, dungeon);
+        // Ensure correctness by using the same starting locations as the serial program:
+        // the default source replays the seeded Random sequence, and hunters are only
+        // created as the engine reaches their search index
+        tick();
+        searches = SearchSource.create(options, dungeon, numSearches, searchSeed);
+        HunterStore hunters = options.hunterStats ? new HunterStore(dungeon, searches) : null;
+        if (hunters != null) searches = hunters;
+        // Checkpoints record the searches that actually ran, so they sit below pruning and deadlines
+        boolean saved = options.checkpoint != null || options.resume != null;
+        HuntCheckpoint checkpoint = saved && !options.engine.equals("region")
+                ? new HuntCheckpoint(dungeon, searches, options, randomSeed, searchSeed) : null;
+        if (checkpoint != null) searches = checkpoint;
+        if (checkpoint != null && options.resume != null) {
+            try {
+                checkpoint.restore(options.resume);
+            } catch (IOException e) {
+                System.err.println("Error: could not resume: " + e.getMessage());
+                System.exit(1);
+            }
         }
+        // The region engine climbs its own way, past SearchSource.hunt, so it gets no pruning,
+        // deadline or progress lines
+        ManaPruner pruner = options.prune && !options.engine.equals("region") ? new ManaPruner(dungeon, searches) : null;
+        if (pruner != null) searches = pruner;
+        boolean timed = options.deadlineMillis > 0 || options.progressMillis > 0;
+        HuntProgress progress = timed && !options.engine.equals("region")
+                ? new HuntProgress(dungeon, searches, options.deadlineMillis, options.progressMillis) : null;
+        if (progress != null) searches = progress;
+        tock();
+        long setupTime = endTime - startTime;
 
-        // Create ForkJoinPool and run top-level task
-        // Use the Fork/Join mechanism and join() to synchronize (left.join())
-        ForkJoinPool pool = new ForkJoinPool();
+        // Create the execution engine (Fork/Join pool by default)
+        HuntEngine engine = HuntEngine.create(options, dungeon);
+        if (options.prune && engine instanceof RegionHuntEngine)
+            System.err.println("The region engine does not prune, running every search.");
+        if (timed && engine instanceof RegionHuntEngine)
+            System.err.println("The region engine has no deadline or progress lines, running every search.");
+        if (saved && engine instanceof RegionHuntEngine)
+            System.err.println("The region engine does not checkpoint or resume, running every search.");
+        if (options.metrics != null && engine instanceof RegionHuntEngine)
+            System.err.println("The region engine does not record per-hunt metrics.");
+
+        // Optionally fill the whole mana map first (timed separately from the hunt)
+        long precomputeTime = -1;
+        String precomputeGc = null;
+        if (options.precompute) {
+            GcStats before = options.gcStats ? GcStats.snapshot() : null;
+            tick();
+            dungeon.precomputeMana();
+            tock();
+            precomputeTime = endTime - startTime;
+            if (before != null) precomputeGc = before.describe("precompute", GcStats.snapshot());
+        }
 
         // Time the parallel execution
+        GcStats huntBefore = options.gcStats ? GcStats.snapshot() : null;
         tick();
-        HuntTask root = new HuntTask(searches, 0, searches.length);
-        int[] result = pool.invoke(root);
+        if (progress != null) progress.start();
+        if (checkpoint != null && options.checkpoint != null) checkpoint.start(options.checkpoint, options.checkpointMillis);
+        HuntMetrics metrics = dungeon.getMetrics();
+        if (metrics != null) metrics.start();
+        int[] result;
+        try {
+            result = engine.run(searches);
+        } finally {
+            if (metrics != null) metrics.stop();
+            if (progress != null) progress.stop();
+            if (checkpoint != null) checkpoint.stop();
+        }
         tock();
+        // Searches finished before the resume count as well
+        if (checkpoint != null && checkpoint.getRestoredBest() != null)
+            result = HuntEngine.better(checkpoint.getRestoredBest(), result);
+        if (checkpoint != null && options.checkpoint != null) {
+            try {
+                checkpoint.write(options.checkpoint);
+            } catch (IOException e) {
+                System.err.println("Checkpoint to " + options.checkpoint + " failed: " + e.getMessage());
+            }
+        }
+        GcStats huntAfter = options.gcStats ? GcStats.snapshot() : null;
 
         // Extract the results from parallel computation
         int max = result[0];
-        int finder = result[1]; // index in searches array
+        int finder = result[1]; // search index
 
         // Print out all the simulation results and statistics
         System.out.printf("\t dungeon size: %d,\n", gateSize);
@@ -152,25 +231,107 @@ public class DungeonHunterParallel {
         System.out.printf("\t Number searches: %d\n", numSearches);
 
         System.out.printf("\n\t time: %d ms\n", endTime - startTime);
-        int tmp = dungeon.getGridPointsEvaluated();
+        System.out.printf("\t setup time: %d ms\n", setupTime);
+        if (precomputeTime >= 0) System.out.printf("\t precompute time: %d ms\n", precomputeTime);
+        long tmp = dungeon.getGridPointsEvaluated();
         System.out.printf("\tnumber dungeon grid points evaluated: %d  (%2.0f%s)\n",
-                tmp, (tmp * 1.0 / (dungeonRows * dungeonColumns * 1.0)) * 100.0, "%");
+                tmp, (tmp * 1.0 / ((double) dungeonRows * dungeonColumns)) * 100.0, "%");
+        HuntCounters counters = dungeon.getCounters();
+        if (dungeon.getManaCache() != null) {
+            System.out.printf("\tmana cache: %d values read from %s (every evaluation above was saved to it)\n",
+                    counters.getManaCacheReads(), dungeon.getManaCache().getFile());
+        }
+        System.out.printf("\tvisit claims: %d, cache hits: %d, neighbour probes: %d\n",
+                counters.getVisitClaims(), counters.getCacheHits(), counters.getNeighbourProbes());
+        if (dungeon.getGrid() instanceof TiledDungeonGrid) {
+            TiledDungeonGrid tiled = (TiledDungeonGrid) dungeon.getGrid();
+            System.out.printf("\ttiles allocated: %d of %d\n", tiled.getAllocatedTiles(), tiled.getTileCount());
+        }
+        if (engine instanceof VirtualThreadHuntEngine && ((VirtualThreadHuntEngine) engine).getFallbackThreads() > 0) {
+            System.out.printf("\tvirtual threads not available: batches ran on %d platform threads\n",
+                    ((VirtualThreadHuntEngine) engine).getFallbackThreads());
+        }
+        if (engine instanceof RegionHuntEngine) {
+            RegionHuntEngine regions = (RegionHuntEngine) engine;
+            System.out.printf("\tregions: %d, hand-offs: %d, starts routed to another region: %d\n",
+                    regions.getRegions(), regions.getHandOffs(), regions.getRoutedStarts());
+        }
+        if (options.concurrent) {
+            System.out.printf("\tduplicate evaluations avoided: %d, contested visit claims: %d\n",
+                    counters.getDuplicateEvaluationsAvoided(), counters.getContestedVisitClaims());
+        }
+
+        if (hunters != null && numSearches > 0) {
+            System.out.printf("\thunter steps: %d total, %.1f mean, %d max; stopped on a visited cell: %d\n",
+                    hunters.getTotalSteps(), hunters.getTotalSteps() * 1.0 / numSearches,
+                    hunters.getMaxSteps(), hunters.getStoppedCount());
+        }
+        if (pruner != null && pruner.isCertified()) {
+            System.out.printf("\tpruning: %d searches skipped, %d checks over %d cells, %d of %d tiles above the best\n",
+                    pruner.getSkipped(), pruner.getChecks(), pruner.getCellsChecked(),
+                    pruner.getTilesAboveBest(), pruner.getTileCount());
+        } else if (pruner != null) {
+            System.out.printf("\tpruning: not certified (a higher local maximum was never reached), %d checks over %d cells\n",
+                    pruner.getChecks(), pruner.getCellsChecked());
+        }
+        if (progress != null && progress.isExpired()) {
+            System.out.printf("\tdeadline: %d ms, reached after %d ms; searches completed: %d of %d (%.1f%s), %d skipped\n",
+                    progress.getDeadlineMillis(), progress.getExpiredAfterMillis(), progress.getCompleted(), numSearches,
+                    progress.getCompleted() * 100.0 / Math.max(1, numSearches), "%", progress.getSkipped());
+        } else if (progress != null && progress.getDeadlineMillis() > 0) {
+            System.out.printf("\tdeadline: %d ms, not reached; all %d searches completed\n",
+                    progress.getDeadlineMillis(), numSearches);
+        }
+        if (checkpoint != null && checkpoint.getRestoredCompleted() >= 0) {
+            System.out.printf("\tresumed from %s: %d of %d searches already completed, loaded in %d ms\n",
+                    options.resume, checkpoint.getRestoredCompleted(), numSearches, checkpoint.getRestoreMillis());
+        }
+        if (checkpoint != null && checkpoint.getWritten() > 0) {
+            System.out.printf("\tcheckpoints: %d written to %s, the last %d bytes in %d ms\n",
+                    checkpoint.getWritten(), options.checkpoint, checkpoint.getLastBytes(), checkpoint.getLastWriteMillis());
+        }
+        if (metrics != null && !(engine instanceof RegionHuntEngine)) {
+            HuntMetrics.Snapshot snapshot = metrics.snapshot();
+            if (options.metrics.equals("json")) System.out.println(snapshot.toJson());
+            else System.out.print(snapshot.toText());
+        }
+        if (precomputeGc != null) System.out.println(precomputeGc);
+        if (huntBefore != null) System.out.println(huntBefore.describe("hunt", huntAfter));
 
         // Display the location where the highest mana was found
         if (finder >= 0) {
             System.out.printf("Dungeon Master (mana %d) found at:  ", max);
             System.out.printf("x=%.1f y=%.1f\n\n",
-                    dungeon.getXcoord(searches[finder].getPosRow()),
-                    dungeon.getYcoord(searches[finder].getPosCol()));
+                    dungeon.getXcoord(result[2]),
+                    dungeon.getYcoord(result[3]));
         } else {
             System.out.println("No finder (no searches ran)");
         }
 
-        // Generate visualization images of search results
-        dungeon.visualisePowerMap("visualiseSearch.png", false);
-        dungeon.visualisePowerMap("visualiseSearchPath.png", true);
+        // Generate visualization images of search results; the PNG files are
+        // encoded in the background while the engine shuts down
+        CompletableFuture<Void> images = dungeon.visualisePowerMaps("visualiseSearch.png", "visualiseSearchPath.png");
 
-        // Properly shut down the thread pool
-        pool.shutdown();
+        // Properly shut down the engine's threads
+        engine.close();
+        images.join();
+
+        if (options.tiles != null) {
+            TilePyramid pyramid = new TilePyramid();
+            try {
+                pyramid.write(dungeon, options.tiles, options.tileLevels);
+                System.out.printf("\ttile pyramid: %d tiles in %d of %d levels written to %s (%d empty skipped) in %d ms\n",
+                        pyramid.getWritten(), pyramid.getLevels() - pyramid.getLowestLevel(), pyramid.getLevels(),
+                        options.tiles, pyramid.getSkipped(), pyramid.getMillis());
+            } catch (IOException e) {
+                System.err.println("Tile pyramid in " + options.tiles + " failed: " + e.getMessage());
+            }
+        }
+
+        HuntEvents.unwatch(mapStatistics);
+        if (recording != null) {
+            HuntEvents.stop(recording);
+            System.out.printf("\tflight recording written to %s\n", options.jfr);
+        }
     }
 }
\ No newline at end of file
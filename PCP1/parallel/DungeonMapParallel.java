@@ -2,18 +2,26 @@
  * DungeonMapParallel.java
  *
  * Essentially the same DungeonMap as provided for the serial solution,
- * renamed for the parallel assignment. This implementation intentionally
- * does not use synchronization primitives because the assignment states
- * the benign race condition may be ignored.
+ * renamed for the parallel assignment. By default this implementation
+ * intentionally does not use synchronization primitives because the
+ * assignment states the benign race condition may be ignored.
+ *
+ * The opt-in concurrent mode claims cells with compare-and-set instead:
+ * a cell's mana is computed by exactly one thread (others wait for the
+ * published value) and a cell is owned by exactly one hunter, so no
+ * trig/exp evaluation or path step is ever done twice.
  *
  * (Copied and adapted from the original DungeonMap.java)
  */
 
-import java.awt.Color;
-import java.awt.image.BufferedImage;
-import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Random;
-import javax.imageio.ImageIO;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
 
 public class DungeonMapParallel {
 
@@ -21,18 +29,47 @@ public class DungeonMapParallel {
     public static final int PRECISION = 10000;
     public static final int RESOLUTION = 5;
 
+    // Marks a cell whose mana is being computed by another thread (concurrent mode only)
+    static final int PENDING = Integer.MIN_VALUE + 1;
+
+    // Grid columns per task of the min/max pass of palette()
+    static final int IMAGE_BAND = 64;
+    static final int BLACK = 0;
+
     // Grid dimensions and coordinate boundaries
     private int rows, columns;
     private double xmin, xmax, ymin, ymax;
-    private int [][] manaMap;  // Stores calculated mana values
-    private int [][] visit;   // Tracks which hunter visited each cell
-    private int dungeonGridPointsEvaluated;  // Counts how many grid points have been calculated
+    private DungeonGrid grid;  // Stores calculated mana values and which hunter visited each cell
     private double bossX;     // Boss location for mana calculations
     private double bossY;
     private double decayFactor;  // Used in the mana formula
+    private ManaFunction manaFunction;  // The mana formula for this boss position
+    private ManaCache manaCache;  // Values saved by earlier runs (--mana-cache), or null
+
+    // Concurrent (CAS) mode: no cell is evaluated or walked twice
+    private final boolean concurrent;
+
+    // Striped statistics (evaluations, claims, cache hits, probes), a cell claimed per climb
+    private final HuntCounters counters;
+
+    // Per-hunt histograms (--metrics), or null
+    private final HuntMetrics metrics;
 
     public DungeonMapParallel(double xmin, double xmax, double ymin, double ymax, int seed) {
+        this(xmin, xmax, ymin, ymax, seed, new HuntOptions());
+    }
+
+    public DungeonMapParallel(double xmin, double xmax, double ymin, double ymax, int seed, HuntOptions options) {
+        this(xmin, xmax, ymin, ymax, seed, options, RESOLUTION);
+    }
+
+    // A map of the same dungeon (same boss) sampled at `resolution` grid points per unit
+    public DungeonMapParallel(double xmin, double xmax, double ymin, double ymax, int seed, HuntOptions options,
+                              int resolution) {
         super();
+        this.concurrent = options.concurrent;
+        this.counters = new HuntCounters(options.threads);
+        this.metrics = options.metrics != null ? new HuntMetrics(options.threads) : null;
         // Set up the coordinate system for the dungeon
         this.xmin = xmin;
         this.xmax = xmax;
@@ -40,8 +77,8 @@ public class DungeonMapParallel {
         this.ymax = ymax;
 
         // Calculate the grid size based on resolution
-        this.rows = (int) Math.round((xmax - xmin) * RESOLUTION);
-        this.columns = (int) Math.round((ymax - ymin) * RESOLUTION);
+        this.rows = (int) Math.round((xmax - xmin) * resolution);
+        this.columns = (int) Math.round((ymax - ymin) * resolution);
 
         // Set up random generation for boss placement
         Random rand;
@@ -53,155 +90,307 @@ public class DungeonMapParallel {
         this.bossX = xmin + (xRange) * rand.nextDouble();
         this.bossY = ymin + (ymax - ymin) * rand.nextDouble();
         this.decayFactor = 2.0 / (xRange * 0.1);
-
-        // Initialize data structures
-        manaMap = new int[rows][columns];
-        visit = new int[rows][columns];
-        dungeonGridPointsEvaluated = 0;
-
-        // Set all cells to unvisited and uncomputed initially
-        for (int i = 0; i < rows; i++) {
-            for (int j = 0; j < columns; j++) {
-                manaMap[i][j] = Integer.MIN_VALUE;  // Indicates not computed yet
-                visit[i][j] = -1;  // Indicates not visited by any hunter
+        this.manaFunction = new ManaFunction(xmin, xmax, ymin, ymax, rows, columns, bossX, bossY, options.simd);
+
+        // Initialize data structures - all cells start unvisited and uncomputed
+        grid = createGrid(options);
+        if (options.manaCache != null) {
+            try {
+                manaCache = ManaCache.open(options.manaCache, manaFunction, rows, columns);
+            } catch (IOException e) {
+                System.err.println("Mana cache not used: " + e.getMessage());
             }
         }
     }
 
+    // Cell storage selected on the command line
+    private DungeonGrid createGrid(HuntOptions options) {
+        if (options.grid.equals("mapped")) return new MappedDungeonGrid(rows, columns, options.scratchDir);
+        if (options.grid.equals("tiled")) return new TiledDungeonGrid(rows, columns);
+        return new FlatDungeonGrid(rows, columns);
+    }
+
     // Check if a cell has been visited by any hunter
     boolean visited(int x, int y) {
-        if (visit[x][y] == -1) return false;
+        if (grid.getVisitor(x, y) == DungeonGrid.UNVISITED) return false;
         return true;
     }
 
     // Mark a cell as visited by a specific hunter
     void setVisited(int x, int y, int id) {
-        if (visit[x][y] == -1) // Don't reset if already visited by someone else
-            visit[x][y] = id;
+        if (grid.getVisitor(x, y) == DungeonGrid.UNVISITED) // Don't reset if already visited by someone else
+            grid.setVisitor(x, y, id);
+    }
+
+    // Claim a cell for a hunter: returns false if the cell was already visited.
+    // In concurrent mode the check and the write are a single compare-and-set,
+    // so two hunters can never both walk from the same cell. Counts go to cell,
+    // claimed by the caller from getCounters() for its whole climb.
+    boolean claimVisit(int x, int y, int id, HuntCounters.Cell cell) {
+        if (visited(x, y)) return false;
+        if (!concurrent) {
+            setVisited(x, y, id);
+        } else if (!grid.compareAndSetVisitor(x, y, DungeonGrid.UNVISITED, id)) {
+            // Another hunter got here between our check and our claim
+            cell.contestedVisitClaims++;
+            return false;
+        }
+        cell.visitClaims++;
+        return true;
     }
 
     // Calculate or retrieve the mana level at a specific grid position
     int getManaLevel(int x, int y) {
-        // If already visited this cell, return the cached value
-        if (visited(x, y)) return manaMap[x][y];
-        // If already computed this cell's mana, return the cached value
-        if (manaMap[x][y] > Integer.MIN_VALUE) return manaMap[x][y];
-
-        // Convert grid coordinates to world coordinates
-        double x_coord = xmin + ((xmax - xmin) / rows) * x;
-        double y_coord = ymin + ((ymax - ymin) / columns) * y;
-        double dx = x_coord - bossX;
-        double dy = y_coord - bossY;
-        double distanceSquared = dx * dx + dy * dy;
-
-        // Calculate the complex mana formula with multiple sine/cosine components
-        // and exponential decay based on distance from the boss
-        double mana = (2 * Math.sin(x_coord + 0.1 * Math.sin(y_coord / 5.0) + Math.PI / 2) *
-                Math.cos((y_coord + 0.1 * Math.cos(x_coord / 5.0) + Math.PI / 2) / 2.0) +
-            0.7 * Math.sin((x_coord * 0.5) + (y_coord * 0.3) + 0.2 * Math.sin(x_coord / 6.0) + Math.PI / 2) +
-            0.3 * Math.sin((x_coord * 1.5) - (y_coord * 0.8) + 0.15 * Math.cos(y_coord / 4.0)) +
-            -0.2 * Math.log(Math.abs(y_coord - Math.PI * 2) + 0.1) +
-            0.5 * Math.sin((x_coord * y_coord) / 4.0 + 0.05 * Math.sin(x_coord)) +
-            1.5 * Math.cos((x_coord + y_coord) / 5.0 + 0.1 * Math.sin(y_coord)) +
-            3.0 * Math.exp(-0.03 * ((x_coord - bossX - 15) * (x_coord - bossX - 15) +
-                                    (y_coord - bossY + 10) * (y_coord - bossY + 10))) +
-            8.0 * Math.exp(-0.01 * distanceSquared) +
-            2.0 / (1.0 + 0.05 * distanceSquared));
-
-        // Convert to fixed-point integer representation for consistency
-        int fixedPoint = (int) (PRECISION * mana);
-        manaMap[x][y] = fixedPoint;
-        dungeonGridPointsEvaluated++;  // Count each evaluation
+        HuntCounters.Cell cell = counters.acquire();
+        int value = getManaLevel(x, y, cell);
+        counters.release(cell);
+        return value;
+    }
+
+    // As above, counting into a cell the caller has already claimed
+    int getManaLevel(int x, int y, HuntCounters.Cell cell) {
+        // If already visited or computed this cell's mana, return the cached value
+        int cached = grid.getMana(x, y);
+        if (cached != DungeonGrid.UNCOMPUTED) {
+            if (cached != PENDING) {
+                cell.cacheHits++;
+                return cached;
+            }
+            return awaitManaLevel(x, y, cell);  // only seen in concurrent mode
+        }
+        if (concurrent) return claimManaLevel(x, y, cell);
+
+        int fixedPoint = computeManaLevel(x, y, cell);
+        grid.setMana(x, y, fixedPoint);
         return fixedPoint;
     }
 
-    // Determine the best direction to move from the current position by checking all neighbors
-    HuntParallel.Direction getNextStepDirection(int x, int y) {
-        HuntParallel.Direction climbDirection = HuntParallel.Direction.STAY;
-        int localMax = getManaLevel(x, y);
+    // Concurrent mode: become the single thread that evaluates this cell, or wait for the winner
+    private int claimManaLevel(int x, int y, HuntCounters.Cell cell) {
+        if (!grid.compareAndSetMana(x, y, DungeonGrid.UNCOMPUTED, PENDING)) {
+            int cached = grid.getManaAcquire(x, y);
+            if (cached != PENDING) {
+                cell.cacheHits++;
+                return cached;
+            }
+            return awaitManaLevel(x, y, cell);
+        }
+        int fixedPoint = computeManaLevel(x, y, cell);
+        grid.setManaRelease(x, y, fixedPoint);
+        return fixedPoint;
+    }
 
-        // Define all 8 possible movement directions
-        int[][] directions = {
-            {-1, 0}, {1, 0}, {0, -1}, {0, 1},       // cardinal directions
-            {-1, -1}, {1, -1}, {-1, 1}, {1, 1}      // diagonal directions
-        };
+    // Spin until the thread that claimed this cell publishes its mana value
+    private int awaitManaLevel(int x, int y, HuntCounters.Cell cell) {
+        cell.duplicateEvaluationsAvoided++;
+        int value;
+        while ((value = grid.getManaAcquire(x, y)) == PENDING) Thread.onSpinWait();
+        return value;
+    }
 
-        HuntParallel.Direction[] directionEnums = {
-            HuntParallel.Direction.LEFT,
-            HuntParallel.Direction.RIGHT,
-            HuntParallel.Direction.UP,
-            HuntParallel.Direction.DOWN,
-            HuntParallel.Direction.UP_LEFT,
-            HuntParallel.Direction.UP_RIGHT,
-            HuntParallel.Direction.DOWN_LEFT,
-            HuntParallel.Direction.DOWN_RIGHT
-        };
+    // Evaluate the mana formula for a grid position as a fixed-point value,
+    // or read it from the mana cache if an earlier run already did
+    private int computeManaLevel(int x, int y, HuntCounters.Cell cell) {
+        if (manaCache != null) {
+            int saved = manaCache.get(x, y);
+            if (saved != DungeonGrid.UNCOMPUTED) {
+                cell.manaCacheReads++;
+                return saved;
+            }
+        }
+        int fixedPoint = manaFunction.evaluate(x, y);
+        cell.evaluations++;  // Count each evaluation
+        if (manaCache != null) manaCache.put(x, y, fixedPoint);
+        return fixedPoint;
+    }
+
+    // Evaluate every uncomputed cell up front, a row per task, using the batch
+    // (optionally SIMD) mana kernel. Must be called before any hunt starts.
+    public void precomputeMana() {
+        IntStream.range(0, rows).parallel().forEach(x -> {
+            HuntCounters.Cell cell = counters.acquire();
+            int[] row = new int[columns];
+            boolean[] saved = null;  // cells of the row read from the mana cache
+            if (manaCache == null) {
+                manaFunction.evaluateRow(x, 0, columns, row, 0);
+            } else {
+                // Only the runs of cells no earlier run has saved are evaluated
+                saved = new boolean[columns];
+                for (int y = 0; y < columns; ) {
+                    row[y] = manaCache.get(x, y);
+                    if (saved[y] = row[y] != DungeonGrid.UNCOMPUTED) {
+                        y++;
+                        continue;
+                    }
+                    int end = y + 1;
+                    while (end < columns && manaCache.get(x, end) == DungeonGrid.UNCOMPUTED) end++;
+                    manaFunction.evaluateRow(x, y, end - y, row, y);
+                    y = end;
+                }
+            }
+            for (int y = 0; y < columns; y++) {
+                if (grid.getMana(x, y) != DungeonGrid.UNCOMPUTED) continue;
+                grid.setMana(x, y, row[y]);
+                if (saved != null && saved[y]) {
+                    cell.manaCacheReads++;
+                    continue;
+                }
+                cell.evaluations++;
+                if (manaCache != null) manaCache.put(x, y, row[y]);
+            }
+            counters.release(cell);
+        });
+    }
 
-        // Check each neighboring cell to find the direction with highest mana
-        for (int i = 0; i < directions.length; i++) {
-            int newX = x + directions[i][0];
-            int newY = y + directions[i][1];
+    // Determine the best direction to move from the current position by checking all neighbors.
+    // Returns a direction code (the HuntParallel.Direction ordinal, STAY = 0) and allocates
+    // nothing; neighbours are probed in the original order, so ties resolve the same way.
+    int getNextStep(int x, int y) {
+        HuntCounters.Cell cell = counters.acquire();
+        int next = getNextStep(x, y, cell);
+        counters.release(cell);
+        return next;
+    }
 
-            // Make sure the new position is within bounds
+    // As above, counting into a cell the caller has already claimed
+    int getNextStep(int x, int y, HuntCounters.Cell cell) {
+        int localMax = getManaLevel(x, y, cell);
+        int climbDirection = HuntParallel.STAY;
+
+        if (x > 0 && x < rows - 1 && y > 0 && y < columns - 1) {
+            // Interior cell: all 8 neighbours exist, so no bounds checks are needed
+            for (int d = 1; d < HuntParallel.DIRECTION_COUNT; d++) {
+                int power = getManaLevel(x + HuntParallel.STEP_ROW[d], y + HuntParallel.STEP_COL[d], cell);
+                if (power > localMax) {
+                    localMax = power;
+                    climbDirection = d;
+                }
+            }
+            cell.neighbourProbes += HuntParallel.DIRECTION_COUNT - 1;
+            return climbDirection;
+        }
+
+        // Border cell: make sure each neighbour is within bounds
+        for (int d = 1; d < HuntParallel.DIRECTION_COUNT; d++) {
+            int newX = x + HuntParallel.STEP_ROW[d];
+            int newY = y + HuntParallel.STEP_COL[d];
             if (newX >= 0 && newX < rows && newY >= 0 && newY < columns) {
-                int power = getManaLevel(newX, newY);
+                int power = getManaLevel(newX, newY, cell);
+                cell.neighbourProbes++;
                 if (power > localMax) {
                     localMax = power;
-                    climbDirection = directionEnums[i];
+                    climbDirection = d;
                 }
             }
         }
         return climbDirection;
     }
 
+    // The best direction as an enum, for callers that want readable output
+    HuntParallel.Direction getNextStepDirection(int x, int y) {
+        return HuntParallel.DIRECTIONS[getNextStep(x, y)];
+    }
+
     // Create a visual representation of the mana map as a PNG image
     public void visualisePowerMap(String filename, boolean path) {
-        int width = manaMap.length;
-        int height = manaMap[0].length;
-        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
-
-        // Find the min and max mana values for color scaling
-        int min = Integer.MAX_VALUE;
-        int max = Integer.MIN_VALUE;
-
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                int value = manaMap[x][y];
-                if (value == Integer.MIN_VALUE) continue;  // Skip uncomputed cells
-                if (value < min) min = value;
-                if (value > max) max = value;
-            }
-        }
-
-        double range = (max > min) ? (max - min) : 1.0;
+        visualisePowerMaps(path ? null : filename, path ? filename : null).join();
+    }
 
-        // Color each pixel based on mana level or visit status
-        for (int x = 0; x < width; x++) {
-            for (int y = 0; y < height; y++) {
-                Color color;
-                if (path && !visited(x, y)) color = Color.BLACK;  // Unvisited cells are black in path mode
-                else if (manaMap[x][y] == Integer.MIN_VALUE) color = Color.BLACK;  // Uncomputed cells are black
-                else {
-                    // Normalize the mana value and map it to a color
-                    double normalized = (manaMap[x][y] - min) / range;
-                    color = mapHeightToColor(normalized);
+    // Render the search map and the path map (either file may be null) and
+    // stream them to PNG files on a background thread, a band of rows at a time
+    // (see PngStreamWriter), so no whole image is ever held in memory. Both
+    // images come from one pass over the grid: each band is rendered for both
+    // at once, then encoded into each file. The future completes once both
+    // files are written.
+    public CompletableFuture<Void> visualisePowerMaps(String searchFile, String pathFile) {
+        if (searchFile == null && pathFile == null) return CompletableFuture.completedFuture(null);
+        Palette palette = palette();
+        int width = rows;
+        int height = columns;
+        List<Path> files = new ArrayList<>();
+        int search = searchFile == null ? -1 : files.size();
+        if (searchFile != null) files.add(Paths.get(searchFile));
+        int path = pathFile == null ? -1 : files.size();
+        if (pathFile != null) files.add(Paths.get(pathFile));
+
+        // Image rows [first, first + count) are grid columns height - first - count .. height - first - 1
+        // (flipped for proper orientation); x runs over grid rows, so each read is a short contiguous run
+        PngStreamWriter.Layers images = (first, count, rgb) -> {
+            int y0 = height - first - count;
+            for (int x = 0; x < width; x++) {
+                for (int y = y0; y < y0 + count; y++) {
+                    int at = (height - 1 - y - first) * width + x;
+                    int color = palette.color(grid.getMana(x, y));
+                    if (search >= 0) rgb[search][at] = color;
+                    if (path >= 0) rgb[path][at] = visited(x, y) ? color : BLACK;  // Unvisited cells are black in path mode
                 }
-                image.setRGB(x, height - 1 - y, color.getRGB());  // Flip Y coordinate for proper orientation
             }
+        };
+
+        // Save the images to files without holding up the caller
+        return CompletableFuture.runAsync(() -> {
+            try {
+                PngStreamWriter.write(files.toArray(new Path[0]), width, height, images);
+            } catch (Exception e) {
+                e.printStackTrace();
+                return;
+            }
+            if (searchFile != null) System.out.println("map saved to " + searchFile);
+            if (pathFile != null) System.out.println("map saved to " + pathFile);
+        }, task -> new Thread(task, "png-writer").start());
+    }
+
+    // Colors of the mana values of this map, scaled between its lowest and highest evaluated cell
+    static final class Palette {
+        private final int min;
+        private final int[] colors;  // value - min indexes the table
+
+        private Palette(int min, int[] colors) {
+            this.min = min;
+            this.colors = colors;
         }
 
-        // Save the image to a file
-        try {
-            File output = new File(filename);
-            ImageIO.write(image, "png", output);
-            System.out.println("map saved to " + filename);
-        } catch (Exception e) {
-            e.printStackTrace();
+        // RGB color of a mana value; uncomputed cells are black
+        int color(int value) {
+            return value == DungeonGrid.UNCOMPUTED ? BLACK : colors[value - min];
         }
     }
 
-    // Map normalized mana values (0.0 to 1.0) to colors using a gradient
-    private Color mapHeightToColor(double normalized) {
+    // The color scale of the current grid
+    Palette palette() {
+        int width = rows;
+        int height = columns;
+        int bands = (height + IMAGE_BAND - 1) / IMAGE_BAND;
+
+        // Find the min and max mana values for color scaling, a band of columns per task
+        int[] minMax = IntStream.range(0, bands).parallel().mapToObj(band -> {
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            int y0 = band * IMAGE_BAND, y1 = Math.min(height, y0 + IMAGE_BAND);
+            for (int x = 0; x < width; x++) {
+                for (int y = y0; y < y1; y++) {
+                    int value = grid.getMana(x, y);
+                    if (value == DungeonGrid.UNCOMPUTED) continue;  // Skip uncomputed cells
+                    if (value < min) min = value;
+                    if (value > max) max = value;
+                }
+            }
+            return new int[]{min, max};
+        }).reduce(new int[]{Integer.MAX_VALUE, Integer.MIN_VALUE},
+                (a, b) -> new int[]{Math.min(a[0], b[0]), Math.max(a[1], b[1])});
+        int min = minMax[0];
+        int max = minMax[1];
+
+        // Color of every mana value that occurs. Mana is fixed point, so this is
+        // exactly the per-pixel gradient of the original
+        double range = (max > min) ? (max - min) : 1.0;
+        int[] colors = new int[max >= min ? max - min + 1 : 0];
+        IntStream.range(0, colors.length).parallel().forEach(i -> colors[i] = mapHeightToColor(i / range));
+        return new Palette(min, colors);
+    }
+
+    // Map normalized mana values (0.0 to 1.0) to RGB colors using a gradient
+    private static int mapHeightToColor(double normalized) {
         normalized = Math.max(0, Math.min(1, normalized));  // Clamp the value to [0,1]
         int r = 0, g = 0, b = 0;
 
@@ -225,12 +414,26 @@ public class DungeonMapParallel {
             g = (int) (255 * t);
             b = (int) (255 * t);
         }
-        return new Color(r, g, b);
+        return (r << 16) | (g << 8) | b;
     }
 
     // Provide getter methods to access internal state
-    public int getGridPointsEvaluated() {
-        return dungeonGridPointsEvaluated;
+    public long getGridPointsEvaluated() {
+        return counters.getEvaluations();
+    }
+
+    public HuntCounters getCounters() {
+        return counters;
+    }
+
+    public HuntMetrics getMetrics() {
+        return metrics;
+    }
+
+    // A metrics recorder claimed for a hunt starting now that counts into cell (released by its
+    // end()), or null without --metrics
+    HuntMetrics.Recorder metricsRecorder(HuntCounters.Cell cell) {
+        return metrics == null ? null : metrics.begin(cell);
     }
 
     // Convert grid coordinates back to world coordinates
@@ -249,4 +452,22 @@ public class DungeonMapParallel {
     public int getColumns() {
         return columns;
     }
+
+    public DungeonGrid getGrid() {
+        return grid;
+    }
+
+    // The on-disk mana cache, or null if there is none
+    public ManaCache getManaCache() {
+        return manaCache;
+    }
+
+    public ManaFunction getManaFunction() {
+        return manaFunction;
+    }
+
+    public boolean isConcurrent() {
+        return concurrent;
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,24 @@
+/**
+ * FixedPoolHuntEngine.java
+ *
+ * A fixed pool of platform threads with static partitioning: the searches
+ * are cut into one contiguous chunk per thread, with no splitting or work
+ * stealing at run time.
+ */
+
+import java.util.concurrent.Executors;
+
+public class FixedPoolHuntEngine extends ChunkedHuntEngine {
+
+    private final int threads;
+
+    public FixedPoolHuntEngine(int threads) {
+        super(Executors.newFixedThreadPool(threads));
+        this.threads = threads;
+    }
+
+    @Override
+    protected int chunkSize(int numSearches) {
+        return (numSearches + threads - 1) / threads;
+    }
+}
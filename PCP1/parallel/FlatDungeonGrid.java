@@ -0,0 +1,89 @@
+/**
+ * FlatDungeonGrid.java
+ *
+ * DungeonGrid backed by two contiguous row-major int arrays instead of
+ * int[rows][columns]. A cell lookup is a single bounds-checked array
+ * access (no row pointer to chase), neighbouring cells of a hunt share
+ * cache lines, and initialisation is two bulk Arrays.fill calls.
+ */
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+public class FlatDungeonGrid implements DungeonGrid {
+
+    // Element handle for the atomic accessors of the concurrent map mode
+    private static final VarHandle CELL = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private final int rows, columns;
+    private final int[] mana;   // mana[x * columns + y]
+    private final int[] visit;  // visit[x * columns + y]
+
+    public FlatDungeonGrid(int rows, int columns) {
+        this.rows = rows;
+        this.columns = columns;
+        // Java arrays are int indexed, so the whole grid has to fit in one
+        if ((long) rows * columns > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("Grid of " + rows + "x" + columns + " is too large for a flat grid, use --grid mapped.");
+        mana = new int[rows * columns];
+        visit = new int[rows * columns];
+        Arrays.fill(mana, UNCOMPUTED);
+        Arrays.fill(visit, UNVISITED);
+    }
+
+    // Row-major position of a cell in the backing arrays
+    private int index(int x, int y) {
+        return x * columns + y;
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public int getColumns() {
+        return columns;
+    }
+
+    @Override
+    public int getMana(int x, int y) {
+        return mana[index(x, y)];
+    }
+
+    @Override
+    public void setMana(int x, int y, int value) {
+        mana[index(x, y)] = value;
+    }
+
+    @Override
+    public int getVisitor(int x, int y) {
+        return visit[index(x, y)];
+    }
+
+    @Override
+    public void setVisitor(int x, int y, int id) {
+        visit[index(x, y)] = id;
+    }
+
+    @Override
+    public int getManaAcquire(int x, int y) {
+        return (int) CELL.getAcquire(mana, index(x, y));
+    }
+
+    @Override
+    public void setManaRelease(int x, int y, int value) {
+        CELL.setRelease(mana, index(x, y), value);
+    }
+
+    @Override
+    public boolean compareAndSetMana(int x, int y, int expected, int value) {
+        return CELL.compareAndSet(mana, index(x, y), expected, value);
+    }
+
+    @Override
+    public boolean compareAndSetVisitor(int x, int y, int expected, int id) {
+        return CELL.compareAndSet(visit, index(x, y), expected, id);
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * ForkJoinHuntEngine.java
+ *
+ * The original execution strategy: a ForkJoinPool runs a HuntTask that
+ * recursively splits the search range (see TaskGranularity) and reduces
+ * the leaf results on join.
+ */
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+public class ForkJoinHuntEngine implements HuntEngine {
+
+    private final ForkJoinPool pool;
+    private final int threshold;  // fixed leaf size, 0 = adaptive
+
+    public ForkJoinHuntEngine(int parallelism, int threshold) {
+        this.pool = new ForkJoinPool(parallelism);
+        this.threshold = threshold;
+    }
+
+    @Override
+    public int[] run(SearchSource searches) {
+        TaskGranularity granularity = threshold > 0
+                ? TaskGranularity.fixed(threshold)
+                : TaskGranularity.auto(searches.size(), pool.getParallelism());
+        return pool.invoke(new HuntTask(searches, 0, searches.size(), granularity));
+    }
+
+    @Override
+    public void close() {
+        // Properly shut down the thread pool
+        pool.shutdown();
+    }
+
+    // RecursiveTask that returns int[]{maxValue, finderIndex, finderRow, finderColumn}
+    // This is the core of the Fork/Join implementation
+    static class HuntTask extends RecursiveTask<int[]> {
+        private final SearchSource searches;
+        private final int lo, hi; // range [lo, hi) that this task will handle
+        private final TaskGranularity granularity; // decides when to split and how big a leaf is
+        private HuntTask nextForked; // links the subtasks forked by the same parent
+
+        public HuntTask(SearchSource searches, int lo, int hi, TaskGranularity granularity) {
+            this.searches = searches;
+            this.lo = lo;
+            this.hi = hi;
+            this.granularity = granularity;
+        }
+
+        @Override
+        protected int[] compute() {
+            int from = lo, to = hi;
+            int[] best = {Integer.MIN_VALUE, -1, -1, -1};
+            HuntTask forked = null;
+            int leaf = granularity.leafSize();
+            while (to - from > leaf) {
+                if (granularity.shouldSplit()) {
+                    // Too big and workers may be idle: fork the lower half, keep the upper half
+                    int mid = from + (to - from) / 2;
+                    HuntTask left = new HuntTask(searches, from, mid, granularity);
+                    left.fork();
+                    left.nextForked = forked;
+                    forked = left;
+                    from = mid;
+                } else {
+                    // Enough work is queued already: run one leaf from the top of our range
+                    best = HuntEngine.better(best, hunt(to - leaf, to));
+                    to -= leaf;
+                }
+                leaf = granularity.leafSize();
+            }
+            best = HuntEngine.better(best, hunt(from, to));
+            // Wait for the forked subtasks, most recently forked first
+            for (HuntTask t = forked; t != null; t = t.nextForked) best = HuntEngine.better(best, t.join());
+            return best;
+        }
+
+        // Process a leaf range sequentially, feeding its cost back to the granularity policy
+        private int[] hunt(int from, int to) {
+            if (!granularity.isAuto()) return HuntEngine.huntRange(searches, from, to);
+            long start = System.nanoTime();
+            int[] result = HuntEngine.huntRange(searches, from, to);
+            granularity.record(to - from, System.nanoTime() - start);
+            return result;
+        }
+    }
+}
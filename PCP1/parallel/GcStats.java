@@ -0,0 +1,64 @@
+/**
+ * GcStats.java
+ *
+ * Snapshot of the JVM's garbage collection and allocation counters, taken
+ * before and after a phase of the run so its GC cost can be reported.
+ * Collections and collection time come from the GarbageCollectorMXBeans;
+ * allocated bytes are summed over all live threads through the HotSpot
+ * ThreadMXBean extension (reported as -1 where it is not supported).
+ */
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+public class GcStats {
+
+    final long collections;
+    final long collectionMillis;
+    final long allocatedBytes;
+    final long nanoTime;
+
+    private GcStats(long collections, long collectionMillis, long allocatedBytes, long nanoTime) {
+        this.collections = collections;
+        this.collectionMillis = collectionMillis;
+        this.allocatedBytes = allocatedBytes;
+        this.nanoTime = nanoTime;
+    }
+
+    public static GcStats snapshot() {
+        long count = 0, millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            count += Math.max(0, gc.getCollectionCount());
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        return new GcStats(count, millis, allocatedBytes(), System.nanoTime());
+    }
+
+    // Bytes allocated so far by all live threads, or -1 if the JVM cannot tell
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (!(threads instanceof com.sun.management.ThreadMXBean)) return -1;
+        com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+        if (!hotspot.isThreadAllocatedMemorySupported() || !hotspot.isThreadAllocatedMemoryEnabled()) return -1;
+        long total = 0;
+        for (long bytes : hotspot.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+            if (bytes > 0) total += bytes;
+        }
+        return total;
+    }
+
+    // One report line for the phase between this snapshot and a later one
+    public String describe(String phase, GcStats after) {
+        long collected = after.collections - collections;
+        long millis = after.collectionMillis - collectionMillis;
+        double seconds = Math.max(1, after.nanoTime - nanoTime) / 1e9;
+        if (allocatedBytes < 0 || after.allocatedBytes < 0) {
+            return String.format("\t%s GC: %d collections, %d ms", phase, collected, millis);
+        }
+        // Threads that exit during the phase take their counts with them, so clamp at zero
+        double megabytes = Math.max(0, after.allocatedBytes - allocatedBytes) / (1024.0 * 1024.0);
+        return String.format("\t%s GC: %d collections, %d ms, allocated %.1f MB (%.1f MB/s)",
+                phase, collected, millis, megabytes, megabytes / seconds);
+    }
+}
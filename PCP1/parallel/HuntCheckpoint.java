@@ -0,0 +1,414 @@
+/**
+ * HuntCheckpoint.java
+ *
+ * Checkpoint and resume of a hunt (--checkpoint <file>, --resume <file>).
+ * Wraps the SearchSource of the run, hunts it in batches of BATCH searches
+ * and marks each finished batch in a bitset of completed search indices.
+ * Every --checkpoint-interval a daemon thread writes the bitset, the best
+ * result of the completed searches and the whole map (cached mana and
+ * visitor of every cell) to the file while the hunt goes on.
+ *
+ * The snapshot is taken without stopping the workers: the bitset is read
+ * first (each batch publishes its cells and best before its bits, with
+ * release/acquire ordering), then the map. Cells written later, or by
+ * searches that were still climbing, may also be in the file, so on resume
+ * every visit by a search that is not marked complete is cleared and that
+ * search runs again from its start, as if it had never run. Mana values
+ * are the formula's whatever the state of the hunt, so they are all kept,
+ * along with the evaluation count.
+ *
+ * File layout (little-endian), written with FileChannel from a direct
+ * buffer in large sequential writes to a temporary file that then
+ * replaces the checkpoint, so a crash never leaves a torn one:
+ *   header   MAGIC, VERSION, the run it belongs to (rows, columns, xmin,
+ *            ymin, seed, searches, starts, search seed), evaluations,
+ *            best {mana, index, row, col}, TILE, compressed flag and the
+ *            offsets of the bitset, tile data and tile table
+ *   bitset   one bit per search, as longs
+ *   tiles    per TILE x TILE tile with anything in it: mana then visitor
+ *            ints, deflated if --checkpoint-compress
+ *   table    per tile: offset and length of its data (0: empty tile)
+ * --resume maps the file read-only and loads it before the hunt; it must
+ * be resumed with the same gridSize, factor, seed and --starts.
+ */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+public class HuntCheckpoint implements SearchSource {
+
+    static final int MAGIC = 0x44484350;  // "DHCP"
+    static final int VERSION = 1;
+    static final int BATCH = 64;          // searches marked complete at a time
+    static final int TILE = TiledDungeonGrid.TILE;
+    static final long DEFAULT_INTERVAL_MILLIS = 5000;
+
+    private static final int HEADER_BYTES = 128;
+    private static final int TILE_CELLS = TILE * TILE;
+    private static final int TILE_BYTES = TILE_CELLS * 8;   // mana + visitor ints
+    private static final int WRITE_BUFFER = 1 << 20;        // bytes per channel write
+    private static final long MAP_WINDOW = 1L << 30;        // bytes mapped at a time on resume
+
+    private static final VarHandle WORD = MethodHandles.arrayElementVarHandle(long[].class);
+
+    private final DungeonMapParallel dungeon;
+    private final SearchSource searches;
+    private final int seed, starts;
+    private final long searchSeed;
+    private final int rows, columns, tileRows, tileColumns;
+
+    private final long[] completed;  // bit i: search i finished
+    private final AtomicReference<int[]> best = new AtomicReference<>(new int[]{Integer.MIN_VALUE, -1, -1, -1});
+    private final boolean compress;
+
+    private ScheduledExecutorService writer;
+
+    // Statistics
+    private int[] restoredBest;
+    private long restoredCompleted = -1;  // -1: not resumed
+    private long restoreMillis;
+    private volatile int written;
+    private volatile long lastWriteMillis, lastBytes;
+
+    public HuntCheckpoint(DungeonMapParallel dungeon, SearchSource searches, HuntOptions options, int seed, long searchSeed) {
+        this.dungeon = dungeon;
+        this.searches = searches;
+        this.seed = seed;
+        this.starts = options.starts.equals("keyed") ? 1 : 0;
+        this.searchSeed = searchSeed;
+        this.compress = options.checkpointCompress;
+        this.rows = dungeon.getRows();
+        this.columns = dungeon.getColumns();
+        this.tileRows = (rows + TILE - 1) / TILE;
+        this.tileColumns = (columns + TILE - 1) / TILE;
+        this.completed = new long[(searches.size() + 63) >>> 6];
+    }
+
+    @Override
+    public int size() {
+        return searches.size();
+    }
+
+    @Override
+    public Cursor cursor(int from) {
+        return searches.cursor(from);
+    }
+
+    // Hunt the searches of [from, to) that are not complete yet, a batch at a time
+    @Override
+    public int[] hunt(int from, int to) {
+        int[] result = {Integer.MIN_VALUE, -1, -1, -1};
+        int lo = from;
+        while ((lo = nextIncomplete(lo, to)) < to) {
+            int hi = lo + 1;
+            while (hi < to && hi - lo < BATCH && !isComplete(hi)) hi++;
+            int[] batch = searches.hunt(lo, hi);
+            if (batch[1] >= 0) offer(batch);
+            markComplete(lo, hi);
+            result = HuntEngine.better(result, batch);
+            lo = hi;
+        }
+        return result;
+    }
+
+    private int nextIncomplete(int i, int to) {
+        while (i < to && isComplete(i)) i++;
+        return i;
+    }
+
+    private boolean isComplete(int i) {
+        return ((long) WORD.getAcquire(completed, i >>> 6) & (1L << i)) != 0;
+    }
+
+    // Set the bits of [lo, hi) after the batch's cells and best are published
+    private void markComplete(int lo, int hi) {
+        for (int i = lo; i < hi; ) {
+            int word = i >>> 6;
+            int end = Math.min(hi, (word + 1) << 6);
+            long bits = (end - i == 64 ? -1L : ((1L << (end - i)) - 1)) << i;
+            WORD.getAndBitwiseOrRelease(completed, word, bits);
+            i = end;
+        }
+    }
+
+    private void offer(int[] batch) {
+        int[] current = best.get();
+        while (HuntEngine.better(current, batch) != current) {
+            if (best.compareAndSet(current, batch)) return;
+            current = best.get();
+        }
+    }
+
+    // Write a checkpoint every interval until stop(); write failures are reported, not fatal
+    public void start(Path file, long intervalMillis) {
+        writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "hunt-checkpoint");
+            t.setDaemon(true);
+            return t;
+        });
+        writer.scheduleWithFixedDelay(() -> {
+            try {
+                write(file);
+            } catch (IOException | UncheckedIOException e) {
+                System.err.println("Checkpoint to " + file + " failed: " + e.getMessage());
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Stop the periodic writes, waiting for one in progress
+    public void stop() {
+        if (writer == null) return;
+        writer.shutdown();
+        try {
+            writer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Snapshot the run into file, replacing it only once the new one is complete
+    public synchronized void write(Path file) throws IOException {
+        long start = System.nanoTime();
+        // Bits first: every search they mark has its cells and best published already
+        long[] done = new long[completed.length];
+        long count = 0;
+        for (int w = 0; w < done.length; w++) {
+            done[w] = (long) WORD.getAcquire(completed, w);
+            count += Long.bitCount(done[w]);
+        }
+        int[] b = best.get();
+
+        Path parent = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        long bytes;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer out = ByteBuffer.allocateDirect(WRITE_BUFFER).order(ByteOrder.LITTLE_ENDIAN);
+            long bitsetOffset = HEADER_BYTES;
+            long tilesOffset = bitsetOffset + 8L * done.length;
+
+            // Bitset, after room for the header
+            channel.position(bitsetOffset);
+            for (long word : done) {
+                if (out.remaining() < 8) drain(channel, out);
+                out.putLong(word);
+            }
+
+            // Tiles, remembering where each one went
+            long[] tileOffset = new long[tileRows * tileColumns];
+            int[] tileLength = new int[tileOffset.length];
+            long position = tilesOffset;
+            ByteBuffer raw = ByteBuffer.allocate(TILE_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            byte[] packed = new byte[TILE_BYTES + 64];
+            Deflater deflater = compress ? new Deflater(Deflater.BEST_SPEED) : null;
+            try {
+                for (int t = 0; t < tileOffset.length; t++) {
+                    if (!readTile(t, raw)) continue;
+                    byte[] data = raw.array();
+                    int length = TILE_BYTES;
+                    if (deflater != null) {
+                        deflater.reset();
+                        deflater.setInput(data, 0, TILE_BYTES);
+                        deflater.finish();
+                        length = deflater.deflate(packed);
+                        data = packed;
+                    }
+                    tileOffset[t] = position;
+                    tileLength[t] = length;
+                    for (int at = 0; at < length; ) {
+                        if (!out.hasRemaining()) drain(channel, out);
+                        int n = Math.min(out.remaining(), length - at);
+                        out.put(data, at, n);
+                        at += n;
+                    }
+                    position += length;
+                }
+            } finally {
+                if (deflater != null) deflater.end();
+            }
+
+            // Tile table
+            long tableOffset = position;
+            for (int t = 0; t < tileOffset.length; t++) {
+                if (out.remaining() < 12) drain(channel, out);
+                out.putLong(tileOffset[t]).putInt(tileLength[t]);
+            }
+            drain(channel, out);
+            bytes = channel.position();
+
+            // Header last, at the front
+            out.putInt(MAGIC).putInt(VERSION)
+               .putInt(rows).putInt(columns)
+               .putDouble(dungeon.getXcoord(0)).putDouble(dungeon.getYcoord(0))
+               .putInt(seed).putInt(searches.size()).putInt(starts).putLong(searchSeed)
+               .putLong(dungeon.getGridPointsEvaluated())
+               .putInt(b[0]).putInt(b[1]).putInt(b[2]).putInt(b[3])
+               .putLong(count)
+               .putInt(TILE).putInt(compress ? 1 : 0)
+               .putLong(bitsetOffset).putLong(tilesOffset).putLong(tableOffset);
+            out.flip();
+            channel.write(out, 0);
+            channel.force(false);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        written++;
+        lastBytes = bytes;
+        lastWriteMillis = (System.nanoTime() - start) / 1_000_000;
+    }
+
+    private static void drain(FileChannel channel, ByteBuffer out) throws IOException {
+        out.flip();
+        while (out.hasRemaining()) channel.write(out);
+        out.clear();
+    }
+
+    // Copy tile t into raw (mana, then visitors, cells outside the grid empty); false if nothing is in it
+    private boolean readTile(int t, ByteBuffer raw) {
+        DungeonGrid grid = dungeon.getGrid();
+        int x0 = (t / tileColumns) * TILE, y0 = (t % tileColumns) * TILE;
+        int x1 = Math.min(rows, x0 + TILE), y1 = Math.min(columns, y0 + TILE);
+        IntBuffer mana = raw.clear().asIntBuffer();
+        IntBuffer visit = raw.position(TILE_CELLS * 4).slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        boolean any = false;
+        for (int dx = 0; dx < TILE; dx++) {
+            int x = x0 + dx;
+            for (int dy = 0; dy < TILE; dy++) {
+                int y = y0 + dy;
+                int m = DungeonGrid.UNCOMPUTED, v = DungeonGrid.UNVISITED;
+                if (x < x1 && y < y1) {
+                    m = grid.getMana(x, y);
+                    v = grid.getVisitor(x, y);
+                    any |= m != DungeonGrid.UNCOMPUTED || v != DungeonGrid.UNVISITED;
+                }
+                mana.put(m);
+                visit.put(v);
+            }
+        }
+        return any;
+    }
+
+    // Load file into the map and the completed set; call before the hunt starts
+    public void restore(Path file) throws IOException {
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt() != MAGIC) throw new IOException(file + " is not a hunt checkpoint.");
+            if (header.getInt() != VERSION) throw new IOException(file + " was written by another checkpoint version.");
+            boolean sameRun = header.getInt() == rows & header.getInt() == columns
+                    & header.getDouble() == dungeon.getXcoord(0) & header.getDouble() == dungeon.getYcoord(0)
+                    & header.getInt() == seed & header.getInt() == searches.size()
+                    & header.getInt() == starts & header.getLong() == searchSeed;
+            if (!sameRun) throw new IOException(file + " was written by a run with other arguments.");
+            long evaluations = header.getLong();
+            int[] b = {header.getInt(), header.getInt(), header.getInt(), header.getInt()};
+            long count = header.getLong();
+            if (header.getInt() != TILE) throw new IOException(file + " uses another tile size.");
+            boolean compressed = header.getInt() != 0;
+            long bitsetOffset = header.getLong();
+            long tilesOffset = header.getLong();
+            long tableOffset = header.getLong();
+            if (tilesOffset > tableOffset || tableOffset + 12L * tileRows * tileColumns > channel.size())
+                throw new IOException(file + " is truncated or damaged.");
+
+            ByteBuffer bits = channel.map(FileChannel.MapMode.READ_ONLY, bitsetOffset, 8L * completed.length)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            for (int w = 0; w < completed.length; w++) completed[w] = bits.getLong();
+
+            int tiles = tileRows * tileColumns;
+            ByteBuffer table = channel.map(FileChannel.MapMode.READ_ONLY, tableOffset, 12L * tiles)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            Inflater inflater = compressed ? new Inflater() : null;
+            byte[] packed = compressed ? new byte[TILE_BYTES + 64] : null;
+            ByteBuffer raw = ByteBuffer.allocate(TILE_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            MappedByteBuffer window = null;
+            long windowStart = 0;
+            try {
+                for (int t = 0; t < tiles; t++) {
+                    long offset = table.getLong();
+                    int length = table.getInt();
+                    if (length == 0) continue;
+                    // Tiles are stored in order, so the mapped window only moves forward
+                    if (window == null || offset + length > windowStart + window.capacity()) {
+                        windowStart = offset;
+                        window = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+                                Math.max(length, Math.min(MAP_WINDOW, tableOffset - offset)));
+                    }
+                    ByteBuffer data = window.duplicate().position((int) (offset - windowStart)).limit((int) (offset - windowStart) + length);
+                    if (inflater == null) {
+                        data.get(raw.array(), 0, TILE_BYTES);
+                    } else {
+                        data.get(packed, 0, length);
+                        inflater.reset();
+                        inflater.setInput(packed, 0, length);
+                        if (inflater.inflate(raw.array()) != TILE_BYTES) throw new IOException(file + ": tile " + t + " is damaged.");
+                    }
+                    writeTile(t, raw);
+                }
+            } catch (DataFormatException e) {
+                throw new IOException(file + ": tile data is damaged.", e);
+            } finally {
+                if (inflater != null) inflater.end();
+            }
+
+            dungeon.getCounters().addEvaluations(evaluations);
+            best.set(b);
+            restoredBest = b;
+            restoredCompleted = count;
+        }
+        restoreMillis = (System.nanoTime() - start) / 1_000_000;
+    }
+
+    // Copy a saved tile into the map: all mana, and the visits of completed searches only
+    private void writeTile(int t, ByteBuffer raw) {
+        DungeonGrid grid = dungeon.getGrid();
+        int x0 = (t / tileColumns) * TILE, y0 = (t % tileColumns) * TILE;
+        int x1 = Math.min(rows, x0 + TILE), y1 = Math.min(columns, y0 + TILE);
+        IntBuffer mana = raw.clear().asIntBuffer();
+        IntBuffer visit = raw.position(TILE_CELLS * 4).slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+        for (int x = x0; x < x1; x++) {
+            int row = (x - x0) * TILE;
+            for (int y = y0; y < y1; y++) {
+                int m = mana.get(row + y - y0);
+                int v = visit.get(row + y - y0);
+                if (m != DungeonGrid.UNCOMPUTED && m != DungeonMapParallel.PENDING) grid.setMana(x, y, m);
+                // Hunter id v is search v - 1; a search that did not finish runs again
+                if (v != DungeonGrid.UNVISITED && v >= 1 && v <= searches.size() && isComplete(v - 1)) grid.setVisitor(x, y, v);
+            }
+        }
+    }
+
+    // Best result of the searches completed before the resume, or null if not resumed
+    public int[] getRestoredBest() { return restoredBest; }
+
+    // Statistics for the report
+    public long getRestoredCompleted() { return restoredCompleted; }
+    public long getRestoreMillis() { return restoreMillis; }
+    public int getWritten() { return written; }
+    public long getLastWriteMillis() { return lastWriteMillis; }
+    public long getLastBytes() { return lastBytes; }
+}
@@ -0,0 +1,157 @@
+/**
+ * HuntCounters.java
+ *
+ * Contention-free statistics for a DungeonMapParallel. The counters live
+ * in a small array of padded Cells of plain long counters, at least twice
+ * as many as there are hunting threads or processors, each created on
+ * first use. A climb (or a row of precomputeMana) claims a free cell with
+ * one compare-and-set, trying the slot its thread hashes to first, and
+ * releases it when done. An increment is then an ordinary write to memory
+ * no other thread writes to: no lost updates, no CAS per count and no
+ * false sharing with the map's hot fields. A run keeps the same handful of
+ * cells whatever the engine, even one virtual thread per batch, so summing
+ * them stays cheap for the progress and JFR monitors. The totals are the
+ * sum over all cells; they are exact once the workers have been joined
+ * (the join gives the happens-before edge), and a close approximation
+ * while a run is still in progress.
+ */
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class HuntCounters {
+
+    private static final VarHandle BUSY;
+
+    static {
+        try {
+            BUSY = MethodHandles.lookup().findVarHandle(CellValues.class, "busy", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // Padding before the counters so two cells never share a cache line
+    static class CellPadding {
+        long p00, p01, p02, p03, p04, p05, p06, p07;
+    }
+
+    static class CellValues extends CellPadding {
+        long evaluations;                  // fresh mana formula evaluations
+        long manaCacheReads;               // mana read from the on-disk ManaCache instead of evaluated
+        long visitClaims;                  // cells claimed by a hunter (hunt steps)
+        long cacheHits;                    // mana lookups served by an already computed cell
+        long neighbourProbes;              // in-bounds neighbours examined by getNextStepDirection
+        long duplicateEvaluationsAvoided;  // concurrent mode: waited for another thread's evaluation
+        long contestedVisitClaims;         // concurrent mode: lost a visit claim race
+        volatile int busy;                 // 1 while claimed
+    }
+
+    // One slot's counters; only the thread that has claimed it writes them
+    static final class Cell extends CellValues {
+        long p10, p11, p12, p13, p14, p15, p16, p17;
+    }
+
+    private final AtomicReferenceArray<Cell> cells;
+    private final int mask;
+
+    public HuntCounters(int threads) {
+        int slots = slots(threads);
+        this.cells = new AtomicReferenceArray<>(slots);
+        this.mask = slots - 1;
+    }
+
+    // Slots for threads hunting at once: a power of two, at least twice threads and the processors
+    static int slots(int threads) {
+        return Integer.highestOneBit(Math.max(threads, Runtime.getRuntime().availableProcessors()) * 4 - 1);
+    }
+
+    // A free cell for the calling thread's next piece of work; hand it back with release()
+    Cell acquire() {
+        int first = (int) Thread.currentThread().getId() & mask;
+        for (int i = first; ; i = (i + 1) & mask) {
+            Cell cell = cells.get(i);
+            if (cell == null) {
+                cells.compareAndSet(i, null, new Cell());
+                cell = cells.get(i);
+            }
+            if (cell.busy == 0 && BUSY.compareAndSet(cell, 0, 1)) return cell;
+            if (((i + 1) & mask) == first) Thread.yield();  // every slot busy: more threads than slots
+        }
+    }
+
+    void release(Cell cell) {
+        cell.busy = 0;
+    }
+
+    // Count evaluations done before this map existed (a resumed checkpoint)
+    void addEvaluations(long count) {
+        Cell cell = acquire();
+        cell.evaluations += count;
+        release(cell);
+    }
+
+    public long getEvaluations() {
+        long total = 0;
+        for (int i = 0; i < cells.length(); i++) {
+            Cell c = cells.get(i);
+            if (c != null) total += c.evaluations;
+        }
+        return total;
+    }
+
+    public long getManaCacheReads() {
+        long total = 0;
+        for (int i = 0; i < cells.length(); i++) {
+            Cell c = cells.get(i);
+            if (c != null) total += c.manaCacheReads;
+        }
+        return total;
+    }
+
+    public long getVisitClaims() {
+        long total = 0;
+        for (int i = 0; i < cells.length(); i++) {
+            Cell c = cells.get(i);
+            if (c != null) total += c.visitClaims;
+        }
+        return total;
+    }
+
+    public long getCacheHits() {
+        long total = 0;
+        for (int i = 0; i < cells.length(); i++) {
+            Cell c = cells.get(i);
+            if (c != null) total += c.cacheHits;
+        }
+        return total;
+    }
+
+    public long getNeighbourProbes() {
+        long total = 0;
+        for (int i = 0; i < cells.length(); i++) {
+            Cell c = cells.get(i);
+            if (c != null) total += c.neighbourProbes;
+        }
+        return total;
+    }
+
+    public long getDuplicateEvaluationsAvoided() {
+        long total = 0;
+        for (int i = 0; i < cells.length(); i++) {
+            Cell c = cells.get(i);
+            if (c != null) total += c.duplicateEvaluationsAvoided;
+        }
+        return total;
+    }
+
+    public long getContestedVisitClaims() {
+        long total = 0;
+        for (int i = 0; i < cells.length(); i++) {
+            Cell c = cells.get(i);
+            if (c != null) total += c.contestedVisitClaims;
+        }
+        return total;
+    }
+}
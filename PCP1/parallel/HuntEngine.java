@@ -0,0 +1,63 @@
+/**
+ * HuntEngine.java
+ *
+ * Strategy for executing the searches of a run in parallel. Every engine
+ * returns the same int[]{maxValue, finderIndex, finderRow, finderColumn}
+ * result (ties go to the lowest search index; row and column are where
+ * the finder stopped), so DungeonHunterParallel reports identically
+ * whichever engine ran the hunt. Searches come from a SearchSource, so
+ * engines never need the hunters to exist before they run them.
+ *
+ * Engines (--engine):
+ *   forkjoin  recursive split on a ForkJoinPool (default)
+ *   virtual   one virtual thread per batch of searches
+ *   fixed     fixed platform thread pool, static contiguous chunks
+ *   region    one worker per stripe of rows, hunters handed off at
+ *             stripe boundaries (RegionHuntEngine)
+ */
+
+public interface HuntEngine extends AutoCloseable {
+
+    // Run all searches and return {maxValue, finderIndex, finderRow, finderColumn};
+    // finderIndex is -1 if none ran
+    int[] run(SearchSource searches);
+
+    default int[] run(HuntParallel[] searches) {
+        return run(SearchSource.of(searches));
+    }
+
+    // Release the engine's threads
+    @Override
+    void close();
+
+    // Engine selected on the command line, for hunts on the given dungeon
+    static HuntEngine create(HuntOptions options, DungeonMapParallel dungeon) {
+        switch (options.engine) {
+            case "region":
+                return new RegionHuntEngine(dungeon, options.threads);
+            case "virtual":
+                return new VirtualThreadHuntEngine(options.threshold > 0 ? options.threshold : VirtualThreadHuntEngine.BATCH,
+                        options.threads);
+            case "fixed":
+                return new FixedPoolHuntEngine(options.threads);
+            default:
+                return new ForkJoinHuntEngine(options.threads, options.threshold);
+        }
+    }
+
+    // Run searches [from, to) one after another on the calling thread, as one dungeon.HuntLeaf event
+    static int[] huntRange(SearchSource searches, int from, int to) {
+        HuntEvents.Leaf event = HuntEvents.leaf();
+        int[] result = searches.hunt(from, to);
+        HuntEvents.leaf(event, from, to, result);
+        return result;
+    }
+
+    // The result with the higher mana value; on a tie the lower search index wins
+    static int[] better(int[] a, int[] b) {
+        if (b[1] < 0) return a;
+        if (a[1] < 0) return b;
+        if (a[0] != b[0]) return a[0] > b[0] ? a : b;
+        return a[1] <= b[1] ? a : b;
+    }
+}
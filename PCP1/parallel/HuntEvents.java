@@ -0,0 +1,211 @@
+/**
+ * HuntEvents.java
+ *
+ * Java Flight Recorder events of a hunt, for finding load imbalance and
+ * wasted work in JMC. All of them are in the "Dungeon Hunter" category:
+ *   dungeon.HuntLeaf       one leaf range hunted on one worker thread
+ *                          (forkjoin, virtual and fixed engines): searches
+ *                          [from, to), duration and the best mana it found;
+ *                          the worker is the event thread
+ *   dungeon.Search         one search in every SEARCH_SAMPLE (by index):
+ *                          steps, start and end cell, and whether it ended
+ *                          on a cell another hunter had visited or on a
+ *                          local peak
+ *   dungeon.MapStatistics  the map's HuntCounters totals, every second
+ *                          and once when the run is over
+ *
+ * The events are written when a recording is running, started either with
+ * --jfr <file> or the JVM's -XX:StartFlightRecording. Without one, every
+ * site costs a check that the JIT folds to nothing, and unsampled searches
+ * do not even allocate the event. Search events come from
+ * HuntParallel.hunt; the region engine hands hunters between workers in
+ * the middle of a climb and only has the map statistics.
+ */
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import jdk.jfr.Category;
+import jdk.jfr.Configuration;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Period;
+import jdk.jfr.Recording;
+import jdk.jfr.StackTrace;
+
+public final class HuntEvents {
+
+    static final int SEARCH_SAMPLE = 64;  // one dungeon.Search event per this many searches
+
+    private HuntEvents() {
+    }
+
+    @Name("dungeon.HuntLeaf")
+    @Label("Hunt Leaf")
+    @Category("Dungeon Hunter")
+    @Description("A range of searches hunted sequentially on one worker")
+    @StackTrace(false)
+    static final class Leaf extends Event {
+        @Label("First Search")
+        int from;
+
+        @Label("End Search")
+        @Description("One past the last search of the range")
+        int to;
+
+        @Label("Best Mana")
+        int mana;
+    }
+
+    @Name("dungeon.Search")
+    @Label("Search")
+    @Category("Dungeon Hunter")
+    @Description("One sampled hill climb")
+    @StackTrace(false)
+    static final class Search extends Event {
+        @Label("Search")
+        int index;
+
+        @Label("Steps")
+        int steps;
+
+        @Label("Start Row")
+        int startRow;
+
+        @Label("Start Column")
+        int startColumn;
+
+        @Label("End Row")
+        int endRow;
+
+        @Label("End Column")
+        int endColumn;
+
+        @Label("Stopped On Visited")
+        @Description("Ended on a cell another hunter had visited, rather than on a local peak")
+        boolean stoppedOnVisited;
+
+        @Label("Mana")
+        int mana;
+
+        // Fill in the outcome and write the event
+        void end(int steps, int row, int col, boolean stopped, int mana) {
+            this.steps = steps;
+            this.endRow = row;
+            this.endColumn = col;
+            this.stoppedOnVisited = stopped;
+            this.mana = mana;
+            commit();
+        }
+    }
+
+    @Name("dungeon.MapStatistics")
+    @Label("Map Statistics")
+    @Category("Dungeon Hunter")
+    @Description("Running totals of the map's hunt counters")
+    @Period("1 s")
+    @StackTrace(false)
+    static final class MapStatistics extends Event {
+        @Label("Cells Evaluated")
+        long evaluations;
+
+        @Label("Mana Cache Reads")
+        long manaCacheReads;
+
+        @Label("Visit Claims")
+        long visitClaims;
+
+        @Label("Cache Hits")
+        long cacheHits;
+
+        @Label("Neighbour Probes")
+        long neighbourProbes;
+
+        @Label("Duplicate Evaluations Avoided")
+        long duplicateEvaluationsAvoided;
+
+        @Label("Contested Visit Claims")
+        long contestedVisitClaims;
+    }
+
+    // Start a leaf event; commit it with leaf(event, from, to, result)
+    static Leaf leaf() {
+        Leaf event = new Leaf();
+        event.begin();
+        return event;
+    }
+
+    static void leaf(Leaf event, int from, int to, int[] result) {
+        if (!event.shouldCommit()) return;
+        event.from = from;
+        event.to = to;
+        event.mana = result[1] >= 0 ? result[0] : Integer.MIN_VALUE;
+        event.commit();
+    }
+
+    // Started event for search index if it is sampled and recorded, otherwise null
+    static Search search(int index, int row, int col) {
+        if (index % SEARCH_SAMPLE != 0) return null;
+        Search event = new Search();
+        if (!event.isEnabled()) return null;
+        event.index = index;
+        event.startRow = row;
+        event.startColumn = col;
+        event.begin();
+        return event;
+    }
+
+    // Emit dungeon.MapStatistics for dungeon while a recording asks for it; the returned hook
+    // is passed to unwatch once the run is over
+    static Runnable watch(DungeonMapParallel dungeon) {
+        Runnable hook = () -> {
+            HuntCounters counters = dungeon.getCounters();
+            MapStatistics event = new MapStatistics();
+            event.evaluations = counters.getEvaluations();
+            event.manaCacheReads = counters.getManaCacheReads();
+            event.visitClaims = counters.getVisitClaims();
+            event.cacheHits = counters.getCacheHits();
+            event.neighbourProbes = counters.getNeighbourProbes();
+            event.duplicateEvaluationsAvoided = counters.getDuplicateEvaluationsAvoided();
+            event.contestedVisitClaims = counters.getContestedVisitClaims();
+            event.commit();
+        };
+        FlightRecorder.addPeriodicEvent(MapStatistics.class, hook);
+        return hook;
+    }
+
+    // Record the final totals (runs shorter than a period have no other) and stop watching
+    static void unwatch(Runnable hook) {
+        if (new MapStatistics().isEnabled()) hook.run();
+        FlightRecorder.removePeriodicEvent(hook);
+    }
+
+    // A recording with the JDK's default settings (CPU, GC, locks, ...) and every hunt event,
+    // written to file by stop or, failing that, when the JVM exits
+    static Recording start(Path file) throws IOException {
+        Recording recording;
+        try {
+            recording = new Recording(Configuration.getConfiguration("default"));
+        } catch (ParseException e) {
+            throw new IOException("JFR default configuration: " + e.getMessage(), e);
+        }
+        recording.setName("dungeon-hunt");
+        recording.setDestination(file);
+        recording.setDumpOnExit(true);  // for the runs that end without calling stop
+        recording.enable(Leaf.class);
+        recording.enable(Search.class);
+        recording.enable(MapStatistics.class).withPeriod(Duration.ofSeconds(1));
+        recording.start();
+        return recording;
+    }
+
+    // Stop the recording, which writes it to its destination
+    static void stop(Recording recording) {
+        recording.stop();
+        recording.close();
+    }
+}
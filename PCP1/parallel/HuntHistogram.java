@@ -0,0 +1,91 @@
+/**
+ * HuntHistogram.java
+ *
+ * Log-linear histogram of non-negative long values, in the style of
+ * HdrHistogram: values below 2^SUB_BITS have a bucket each, and every
+ * power of two above that is split into 2^(SUB_BITS - 1) equal buckets, so
+ * any recorded value is known to within 1 part in 64 (1.6%) whatever its
+ * magnitude, in a fixed array of BUCKETS counts. Recording is a shift, a
+ * leading-zero count and an increment.
+ *
+ * A histogram has one writer at a time (see HuntMetrics, where a hunt
+ * claims a recorder before writing to it); others may read it while it is
+ * written and see approximate counts. Histograms merge by adding their counts.
+ */
+
+public class HuntHistogram {
+
+    static final int SUB_BITS = 7;
+    private static final int HALF = 1 << (SUB_BITS - 1);
+    // The top bucket has exponent 62 - (SUB_BITS - 1): a long value has at most 63 significant bits
+    static final int BUCKETS = ((62 - (SUB_BITS - 1)) << (SUB_BITS - 1)) + (1 << SUB_BITS);
+
+    private final long[] counts = new long[BUCKETS];
+    private long count, sum;
+    private long min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+
+    // Bucket of a value: the value itself below 2^SUB_BITS, then 2^(SUB_BITS - 1) buckets per power of two
+    static int bucket(long value) {
+        int exponent = Math.max(0, 63 - Long.numberOfLeadingZeros(value) - (SUB_BITS - 1));
+        return (exponent << (SUB_BITS - 1)) + (int) (value >>> exponent);
+    }
+
+    // Smallest and largest value that fall in a bucket
+    static long lowest(int bucket) {
+        int exponent = bucket < 2 * HALF ? 0 : (bucket >> (SUB_BITS - 1)) - 1;
+        return (long) (bucket - (exponent << (SUB_BITS - 1))) << exponent;
+    }
+
+    static long highest(int bucket) {
+        return bucket + 1 < BUCKETS ? lowest(bucket + 1) - 1 : Long.MAX_VALUE;
+    }
+
+    // Record one value (negative values count as 0)
+    public void record(long value) {
+        if (value < 0) value = 0;
+        counts[bucket(value)]++;
+        count++;
+        sum += value;
+        if (value < min) min = value;
+        if (value > max) max = value;
+    }
+
+    // Add other's counts to this histogram
+    public void add(HuntHistogram other) {
+        for (int b = 0; b < BUCKETS; b++) counts[b] += other.counts[b];
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+    }
+
+    // Value below which the given percentage of the recorded values lie (the highest
+    // value of its bucket, capped at the largest value recorded); 0 if empty
+    public long valueAtPercentile(double percentile) {
+        if (count == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += counts[b];
+            if (seen >= rank) return Math.min(highest(b), max);
+        }
+        return max;
+    }
+
+    // Non-empty buckets as {lowest value, count} pairs, in ascending order
+    public long[][] buckets() {
+        long[] seen = counts.clone();  // the writer may still be adding to counts
+        int used = 0;
+        for (long c : seen) if (c > 0) used++;
+        long[][] pairs = new long[used][];
+        int n = 0;
+        for (int b = 0; b < BUCKETS; b++) if (seen[b] > 0) pairs[n++] = new long[]{lowest(b), seen[b]};
+        return pairs;
+    }
+
+    public long getCount() { return count; }
+    public long getSum() { return sum; }
+    public long getMin() { return count == 0 ? 0 : min; }
+    public long getMax() { return count == 0 ? 0 : max; }
+    public double getMean() { return count == 0 ? 0 : sum * 1.0 / count; }
+}
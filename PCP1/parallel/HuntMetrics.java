@@ -0,0 +1,182 @@
+/**
+ * HuntMetrics.java
+ *
+ * Distribution of the work per hunt (--metrics text|json): histograms of
+ * steps, wall-clock nanoseconds and fresh mana evaluations per hunt, which
+ * tell a run of a few long climbs from one of millions of one-step stops.
+ *
+ * Recording goes to a small array of recorders, at least twice as many as
+ * there are hunting threads or processors, each created on first use. A hunt
+ * claims a free recorder with one compare-and-set (trying the slot its
+ * thread hashes to first, so platform threads keep to their own), records
+ * with plain writes, and releases it. So a run keeps a handful of
+ * recorders whatever the engine, even one virtual thread per batch. A
+ * hunt's evaluations are read off the HuntCounters cell its climb has
+ * claimed, before and after it. snapshot() merges the recorders into one set
+ * of histograms, with the hunt and cell throughput since start(); it is
+ * exact once the engine has returned and approximate while it runs.
+ *
+ * HuntParallel.hunt, the whole search of HuntParallel and HunterStore,
+ * records through the map's metrics (DungeonMapParallel.metricsRecorder(),
+ * null without --metrics, so a hunt only pays a null check). The region
+ * engine hands a hunter between workers mid-climb and does not record.
+ */
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+public class HuntMetrics {
+
+    private static final VarHandle BUSY;
+
+    static {
+        try {
+            BUSY = MethodHandles.lookup().findVarHandle(Recorder.class, "busy", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    // One slot's histograms; only the hunt that has claimed it writes them
+    static final class Recorder {
+        final HuntHistogram steps = new HuntHistogram();
+        final HuntHistogram nanos = new HuntHistogram();
+        final HuntHistogram evaluations = new HuntHistogram();
+        long stopped;  // hunts that ended on a visited cell rather than a local peak
+
+        private volatile int busy;  // 1 while a hunt holds this recorder
+        private HuntCounters.Cell counters;
+        private long startNanos, startEvaluations;
+
+        // Call end() once the hunt returns, which also releases the recorder
+        private void begin(HuntCounters.Cell counters) {
+            this.counters = counters;
+            startEvaluations = counters.evaluations;
+            startNanos = System.nanoTime();
+        }
+
+        void end(int steps, boolean stopped) {
+            nanos.record(System.nanoTime() - startNanos);
+            this.steps.record(steps);
+            evaluations.record(counters.evaluations - startEvaluations);
+            if (stopped) this.stopped++;
+            busy = 0;
+        }
+    }
+
+    private final AtomicReferenceArray<Recorder> recorders;
+    private final int mask;
+    private volatile long startNanos, stopNanos;
+
+    public HuntMetrics(int threads) {
+        int slots = HuntCounters.slots(threads);
+        this.recorders = new AtomicReferenceArray<>(slots);
+        this.mask = slots - 1;
+    }
+
+    // A recorder claimed for a hunt on the calling thread that starts now and counts into cell
+    Recorder begin(HuntCounters.Cell cell) {
+        int first = (int) Thread.currentThread().getId() & mask;
+        for (int i = first; ; i = (i + 1) & mask) {
+            Recorder r = recorders.get(i);
+            if (r == null) {
+                recorders.compareAndSet(i, null, new Recorder());
+                r = recorders.get(i);
+            }
+            if (r.busy == 0 && BUSY.compareAndSet(r, 0, 1)) {
+                r.begin(cell);
+                return r;
+            }
+            if (((i + 1) & mask) == first) Thread.yield();  // every slot busy: more threads than slots
+        }
+    }
+
+    // Throughput is measured from start() to stop(), or to the snapshot while running
+    public void start() {
+        startNanos = System.nanoTime();
+        stopNanos = 0;
+    }
+
+    public void stop() {
+        stopNanos = System.nanoTime();
+    }
+
+    // All recorders merged
+    public Snapshot snapshot() {
+        Snapshot s = new Snapshot();
+        for (int i = 0; i < recorders.length(); i++) {
+            Recorder r = recorders.get(i);
+            if (r == null) continue;
+            s.steps.add(r.steps);
+            s.nanos.add(r.nanos);
+            s.evaluations.add(r.evaluations);
+            s.stopped += r.stopped;
+        }
+        long end = stopNanos != 0 ? stopNanos : System.nanoTime();
+        s.seconds = startNanos == 0 ? 0 : (end - startNanos) / 1e9;
+        return s;
+    }
+
+    // Merged histograms and throughput at one point in time
+    public static final class Snapshot {
+        private final HuntHistogram steps = new HuntHistogram();
+        private final HuntHistogram nanos = new HuntHistogram();
+        private final HuntHistogram evaluations = new HuntHistogram();
+        private long stopped;
+        private double seconds;
+
+        public HuntHistogram getSteps() { return steps; }
+        public HuntHistogram getNanos() { return nanos; }
+        public HuntHistogram getEvaluations() { return evaluations; }
+        public long getHunts() { return steps.getCount(); }
+        public long getStopped() { return stopped; }
+        public double getSeconds() { return seconds; }
+
+        public double getHuntsPerSecond() {
+            return seconds > 0 ? getHunts() / seconds : 0;
+        }
+
+        // Fresh mana evaluations per second of hunting
+        public double getCellsPerSecond() {
+            return seconds > 0 ? evaluations.getSum() / seconds : 0;
+        }
+
+        // Report lines, in the style of the rest of the report
+        public String toText() {
+            return String.format(Locale.ROOT,
+                    "\thunt metrics: %d hunts in %.3f s (%.0f hunts/s, %.0f cells/s), %d stopped on a visited cell\n%s%s%s",
+                    getHunts(), seconds, getHuntsPerSecond(), getCellsPerSecond(), stopped,
+                    line("steps per hunt", steps), line("ns per hunt", nanos), line("evaluations per hunt", evaluations));
+        }
+
+        private static String line(String name, HuntHistogram h) {
+            return String.format(Locale.ROOT, "\t  %-21s mean %.1f, min %d, p50 %d, p90 %d, p99 %d, p99.9 %d, max %d\n",
+                    name + ":", h.getMean(), h.getMin(), h.valueAtPercentile(50), h.valueAtPercentile(90),
+                    h.valueAtPercentile(99), h.valueAtPercentile(99.9), h.getMax());
+        }
+
+        // One JSON object, with each histogram's non-empty buckets as [lowest value, count]
+        public String toJson() {
+            return String.format(Locale.ROOT,
+                    "{\"hunts\": %d, \"stopped\": %d, \"seconds\": %.6f, \"huntsPerSecond\": %.1f, \"cellsPerSecond\": %.1f, "
+                            + "\"steps\": %s, \"nanos\": %s, \"evaluations\": %s}",
+                    getHunts(), stopped, seconds, getHuntsPerSecond(), getCellsPerSecond(),
+                    json(steps), json(nanos), json(evaluations));
+        }
+
+        private static String json(HuntHistogram h) {
+            StringBuilder buckets = new StringBuilder();
+            for (long[] b : h.buckets()) {
+                if (buckets.length() > 0) buckets.append(", ");
+                buckets.append('[').append(b[0]).append(", ").append(b[1]).append(']');
+            }
+            return String.format(Locale.ROOT,
+                    "{\"count\": %d, \"sum\": %d, \"min\": %d, \"max\": %d, \"mean\": %.3f, \"p50\": %d, \"p90\": %d, "
+                            + "\"p99\": %d, \"p999\": %d, \"buckets\": [%s]}",
+                    h.getCount(), h.getSum(), h.getMin(), h.getMax(), h.getMean(), h.valueAtPercentile(50),
+                    h.valueAtPercentile(90), h.valueAtPercentile(99), h.valueAtPercentile(99.9), buckets);
+        }
+    }
+}
@@ -0,0 +1,260 @@
+/**
+ * HuntOptions.java
+ *
+ * Optional command line flags of DungeonHunterParallel. They follow the
+ * three positional arguments of the original program, so the classic
+ *   java DungeonHunterParallel <gridSize> <numSearchesFactor> <randomSeed>
+ * invocation keeps working unchanged.
+ *
+ * Flags:
+ *   --concurrent   claim cells with compare-and-set (no duplicate work)
+ *   --precompute   evaluate the whole mana map before the hunt
+ *   --simd         batch evaluation with the Vector API kernel (needs
+ *                  --add-modules jdk.incubator.vector, within
+ *                  ManaFunction.VECTOR_TOLERANCE of the scalar values)
+ *   --grid <kind>  cell storage: flat (heap arrays, default), tiled (64x64
+ *                  tiles allocated on first touch) or mapped (off-heap
+ *                  memory-mapped file, for very large dungeons)
+ *   --prune        stop hunting once the best can no longer change (per-tile
+ *                  mana bounds, same result), see ManaPruner; not applied by
+ *                  the region engine
+ *   --multires <r1,r2,...>  coarse-to-fine hunt over grids of r1, r2, ...
+ *                  points per unit, ending at RESOLUTION, see MultiResolutionHunt;
+ *                  not with --coordinator
+ *   --top-k <k>    peaks of each level that seed the next (default 8)
+ *   --coordinator <port>  distribute the hunt over worker JVMs that connect
+ *                  to this port (0: any free port), see DistributedHunt
+ *   --workers <n>  number of worker JVMs for --coordinator (default 1)
+ *   --spawn        start the workers as local child processes
+ *   --scratch <dir> directory for the mapped grid file (default java.io.tmpdir)
+ *   --mana-cache <dir>  keep computed mana values in memory-mapped files in
+ *                  dir and reuse them in later runs of the same dungeon,
+ *                  see ManaCache; needs a seed > 0
+ *   --threshold <n|auto>  searches per Fork/Join leaf; auto (default) adapts
+ *                  the split to idle workers and measured hunt cost
+ *                  (for --engine virtual: searches per virtual thread)
+ *   --engine <kind> forkjoin (default), virtual, fixed or region, see HuntEngine
+ *   --threads <n>  worker threads for forkjoin/fixed/region, and for virtual
+ *                  on JDKs without virtual threads (default: all processors)
+ *   --gc-stats     report GC collections and allocation rate of each phase
+ *   --starts <kind> start positions: legacy (default, the original seeded
+ *                  java.util.Random sequence) or keyed (derived from the
+ *                  seed and search index, no setup pass), see SearchSource
+ *   --hunter-stats keep every hunter's final position and steps in a
+ *                  HunterStore and report step statistics
+ *   --deadline <time>  stop the hunt after this long (e.g. 2s, 500ms, 1m)
+ *                  and report the best peak found so far, see HuntProgress;
+ *                  not applied by the region engine
+ *   --progress <interval>  print the best so far, searches done and
+ *                  throughput to stderr every interval (e.g. 1s)
+ *   --checkpoint <file>  save the map and the completed searches to file
+ *                  every interval and at the end, see HuntCheckpoint
+ *   --checkpoint-interval <time>  time between checkpoints (default 5s)
+ *   --checkpoint-compress  deflate each tile of the checkpoint
+ *   --resume <file> load a checkpoint and run only the searches it does
+ *                  not have (same arguments as the run that wrote it);
+ *                  checkpoints need a seed > 0 and are not applied by the
+ *                  region engine
+ *   --tiles <dir>  also export both maps as a zoomable pyramid of PNG tiles
+ *                  with an index.html viewer, see TilePyramid
+ *   --tile-levels <n>  keep only the n finest levels of the pyramid
+ *   --jfr <file>   record the run with Java Flight Recorder, including the
+ *                  hunt's own events, and write the recording to file,
+ *                  see HuntEvents
+ *   --metrics <text|json>  report histograms of steps, time and evaluations
+ *                  per hunt and the hunt throughput, as report lines or one
+ *                  JSON object, see HuntMetrics; not recorded by the region
+ *                  engine
+ */
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+public class HuntOptions {
+
+    boolean concurrent = false;
+    boolean precompute = false;
+    boolean simd = false;
+    String grid = "flat";
+    Path scratchDir = Paths.get(System.getProperty("java.io.tmpdir"));
+    int threshold = 0;  // 0 = auto
+    String engine = "forkjoin";
+    int threads = Runtime.getRuntime().availableProcessors();
+    boolean gcStats = false;
+    String starts = "legacy";
+    boolean hunterStats = false;
+    boolean prune = false;
+    int[] multires = null;  // null: single full-resolution hunt
+    int topK = MultiResolutionHunt.DEFAULT_TOP_K;
+    int coordinatorPort = -1;  // -1: not distributed
+    int workers = 1;
+    boolean spawn = false;
+    long deadlineMillis = 0;  // 0: no time budget
+    long progressMillis = 0;  // 0: no progress lines
+    Path checkpoint = null;   // null: no checkpoints
+    long checkpointMillis = HuntCheckpoint.DEFAULT_INTERVAL_MILLIS;
+    boolean checkpointCompress = false;
+    Path resume = null;
+    Path manaCache = null;    // null: no on-disk mana cache
+    Path tiles = null;        // null: no tile pyramid
+    int tileLevels = 0;       // 0: every level down to one tile
+    Path jfr = null;          // null: no flight recording
+    String metrics = null;    // text or json; null: no per-hunt histograms
+
+    // Parse the flags in args[from..]; throws IllegalArgumentException on bad input
+    static HuntOptions parse(String[] args, int from) {
+        HuntOptions options = new HuntOptions();
+        for (int i = from; i < args.length; i++) {
+            switch (args[i]) {
+                case "--concurrent":
+                    options.concurrent = true;
+                    break;
+                case "--precompute":
+                    options.precompute = true;
+                    break;
+                case "--simd":
+                    options.simd = true;
+                    break;
+                case "--grid":
+                    options.grid = value(args, ++i);
+                    if (!options.grid.equals("flat") && !options.grid.equals("tiled") && !options.grid.equals("mapped"))
+                        throw new IllegalArgumentException("Grid must be flat, tiled or mapped.");
+                    break;
+                case "--threshold":
+                    String t = value(args, ++i);
+                    options.threshold = t.equals("auto") ? 0 : Integer.parseInt(t);
+                    if (!t.equals("auto") && options.threshold <= 0)
+                        throw new IllegalArgumentException("Threshold must be auto or greater than 0.");
+                    break;
+                case "--engine":
+                    options.engine = value(args, ++i);
+                    if (!options.engine.equals("forkjoin") && !options.engine.equals("virtual")
+                            && !options.engine.equals("fixed") && !options.engine.equals("region"))
+                        throw new IllegalArgumentException("Engine must be forkjoin, virtual, fixed or region.");
+                    break;
+                case "--threads":
+                    options.threads = Integer.parseInt(value(args, ++i));
+                    if (options.threads <= 0) throw new IllegalArgumentException("Threads must be greater than 0.");
+                    break;
+                case "--gc-stats":
+                    options.gcStats = true;
+                    break;
+                case "--starts":
+                    options.starts = value(args, ++i);
+                    if (!options.starts.equals("legacy") && !options.starts.equals("keyed"))
+                        throw new IllegalArgumentException("Starts must be legacy or keyed.");
+                    break;
+                case "--hunter-stats":
+                    options.hunterStats = true;
+                    break;
+                case "--prune":
+                    options.prune = true;
+                    break;
+                case "--multires":
+                    options.multires = resolutions(value(args, ++i));
+                    break;
+                case "--top-k":
+                    options.topK = Integer.parseInt(value(args, ++i));
+                    if (options.topK <= 0) throw new IllegalArgumentException("Top-k must be greater than 0.");
+                    break;
+                case "--coordinator":
+                    options.coordinatorPort = Integer.parseInt(value(args, ++i));
+                    if (options.coordinatorPort < 0 || options.coordinatorPort > 65535)
+                        throw new IllegalArgumentException("Coordinator port must be between 0 and 65535.");
+                    break;
+                case "--workers":
+                    options.workers = Integer.parseInt(value(args, ++i));
+                    if (options.workers <= 0) throw new IllegalArgumentException("Workers must be greater than 0.");
+                    break;
+                case "--spawn":
+                    options.spawn = true;
+                    break;
+                case "--deadline":
+                    options.deadlineMillis = millis(value(args, ++i));
+                    break;
+                case "--progress":
+                    options.progressMillis = millis(value(args, ++i));
+                    break;
+                case "--checkpoint":
+                    options.checkpoint = Paths.get(value(args, ++i));
+                    break;
+                case "--checkpoint-interval":
+                    options.checkpointMillis = millis(value(args, ++i));
+                    break;
+                case "--checkpoint-compress":
+                    options.checkpointCompress = true;
+                    break;
+                case "--resume":
+                    options.resume = Paths.get(value(args, ++i));
+                    break;
+                case "--mana-cache":
+                    options.manaCache = Paths.get(value(args, ++i));
+                    break;
+                case "--tiles":
+                    options.tiles = Paths.get(value(args, ++i));
+                    break;
+                case "--tile-levels":
+                    options.tileLevels = Integer.parseInt(value(args, ++i));
+                    if (options.tileLevels <= 0) throw new IllegalArgumentException("Tile levels must be greater than 0.");
+                    break;
+                case "--jfr":
+                    options.jfr = Paths.get(value(args, ++i));
+                    break;
+                case "--metrics":
+                    options.metrics = value(args, ++i);
+                    if (!options.metrics.equals("text") && !options.metrics.equals("json"))
+                        throw new IllegalArgumentException("Metrics must be text or json.");
+                    break;
+                case "--scratch":
+                    options.scratchDir = Paths.get(value(args, ++i));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + args[i] + ".");
+            }
+        }
+        // Workers only hunt a flat share of the full-resolution searches
+        if (options.coordinatorPort >= 0 && options.multires != null)
+            throw new IllegalArgumentException("--multires cannot be combined with --coordinator.");
+        return options;
+    }
+
+    // Ascending resolutions of a multi-resolution hunt, ending at the full RESOLUTION
+    private static int[] resolutions(String list) {
+        String[] parts = list.split(",");
+        int[] levels = new int[parts.length];
+        for (int l = 0; l < parts.length; l++) {
+            levels[l] = Integer.parseInt(parts[l].trim());
+            if (levels[l] <= 0 || levels[l] > DungeonMapParallel.RESOLUTION || (l > 0 && levels[l] <= levels[l - 1]))
+                throw new IllegalArgumentException("Resolutions must ascend from 1 to " + DungeonMapParallel.RESOLUTION + ".");
+        }
+        if (levels[levels.length - 1] == DungeonMapParallel.RESOLUTION) return levels;
+        int[] withFull = Arrays.copyOf(levels, levels.length + 1);
+        withFull[levels.length] = DungeonMapParallel.RESOLUTION;
+        return withFull;
+    }
+
+    // A duration such as 500ms, 2s or 1m (a bare number is seconds), in milliseconds
+    private static long millis(String time) {
+        double scale = 1000;
+        String number = time;
+        if (time.endsWith("ms")) {
+            scale = 1;
+            number = time.substring(0, time.length() - 2);
+        } else if (time.endsWith("s")) {
+            number = time.substring(0, time.length() - 1);
+        } else if (time.endsWith("m")) {
+            scale = 60_000;
+            number = time.substring(0, time.length() - 1);
+        }
+        long millis = Math.round(Double.parseDouble(number) * scale);
+        if (millis <= 0) throw new IllegalArgumentException("Time " + time + " must be greater than 0.");
+        return millis;
+    }
+
+    // The value following a flag
+    private static String value(String[] args, int i) {
+        if (i >= args.length) throw new IllegalArgumentException("Missing value for " + args[i - 1] + ".");
+        return args[i];
+    }
+}
@@ -5,6 +5,8 @@
  * A HuntParallel object holds the start position and performs
  * findManaPeak() on the shared DungeonMapParallel.
  *
+ * The climb loop itself is the static climb(), which HunterStore and
+ * RegionHuntEngine run as well, so every engine climbs the same way.
  */
 
 public class HuntParallel {
@@ -14,12 +16,21 @@ public class HuntParallel {
     private int steps;          // Count how many steps this hunter has taken
     private boolean stopped;    // Track whether this hunter has finished searching
     private DungeonMapParallel dungeon;  // Keep a reference to the shared dungeon
+    private final Climb climb = new Climb();  // state of this hunter's climbs
 
     // Define all possible movement directions for the hunter
     public enum Direction {
         STAY, LEFT, RIGHT, UP, DOWN, UP_LEFT, UP_RIGHT, DOWN_LEFT, DOWN_RIGHT
     }
 
+    // Direction codes (Direction ordinals) and the row/column offset of each move,
+    // so the hunt loop steps with table lookups instead of switching on the enum
+    static final Direction[] DIRECTIONS = Direction.values();
+    static final int DIRECTION_COUNT = DIRECTIONS.length;
+    static final int STAY = 0;
+    static final int[] STEP_ROW = {0, -1, 1, 0, 0, -1, 1, -1, 1};
+    static final int[] STEP_COL = {0, 0, 0, -1, 1, -1, -1, 1, 1};
+
     // Initialize a new hunter with a starting position and dungeon reference
     public HuntParallel(int id, int pos_row, int pos_col, DungeonMapParallel dungeon) {
         this.id = id;
@@ -30,61 +41,90 @@ public class HuntParallel {
         this.steps = 0;
     }
 
+    // Reuse this hunter for another search on the same dungeon (streaming search sources)
+    void restart(int id, int pos_row, int pos_col) {
+        this.id = id;
+        this.posRow = pos_row;
+        this.posCol = pos_col;
+        this.stopped = false;
+        this.steps = 0;
+    }
+
     // Implement the main search algorithm - a greedy hill-climbing approach
     public int findManaPeak() {
-        int power = Integer.MIN_VALUE;
-        Direction next = Direction.STAY;
+        Climb c = climb;
+        int power = hunt(dungeon, id, posRow, posCol, c);
+        posRow = c.row;
+        posCol = c.col;
+        steps = c.steps;
+        stopped = c.outcome == VISITED;
+        return power;
+    }
 
-        // Continue searching until reaching a cell that another hunter has already visited
-        while (!dungeon.visited(posRow, posCol)) {
+    // How a climb ended: on a local maximum, on a cell another hunter had already
+    // visited, or (bounded climbs only) by stepping out of its rows
+    static final int PEAK = 0, VISITED = 1, LEFT_ROWS = 2;
+
+    // A climb in progress: position, steps and last mana value, then how it ended.
+    // Reused from one climb to the next by the thread that owns it.
+    static final class Climb {
+        int row, col, steps, power, outcome;
+    }
+
+    // One whole search of hunter id from (row, col), with its dungeon.Search event and
+    // --metrics recording; returns the mana where it ended, and leaves the rest in c
+    static int hunt(DungeonMapParallel dungeon, int id, int row, int col, Climb c) {
+        HuntEvents.Search event = HuntEvents.search(id - 1, row, col);  // null unless sampled and recorded
+        HuntCounters counters = dungeon.getCounters();
+        HuntCounters.Cell cell = counters.acquire();
+        HuntMetrics.Recorder recorder = dungeon.metricsRecorder(cell);  // null without --metrics
+        c.row = row;
+        c.col = col;
+        c.steps = 0;
+        c.power = Integer.MIN_VALUE;
+        climb(dungeon, id, c, 0, dungeon.getRows(), cell);
+        boolean stopped = c.outcome == VISITED;
+        if (event != null) event.end(c.steps, c.row, c.col, stopped, c.power);
+        if (recorder != null) recorder.end(c.steps, stopped);
+        counters.release(cell);
+        return c.power;
+    }
+
+    // The greedy hill climb every engine runs: continue c while the hunter stays in rows
+    // [lo, hi), until it reaches a local maximum or a cell another hunter has already
+    // visited (claiming a cell marks it as visited by this hunter). Counts go to cell, which
+    // the caller has claimed from the map's counters. Returns c.outcome.
+    static int climb(DungeonMapParallel dungeon, int id, Climb c, int lo, int hi, HuntCounters.Cell cell) {
+        int posRow = c.row, posCol = c.col, count = c.steps, power = c.power;
+        int outcome = VISITED;
+        while (dungeon.claimVisit(posRow, posCol, id, cell)) {
             // Get the mana level at current position
-            power = dungeon.getManaLevel(posRow, posCol);
-            // Mark this cell as visited by this hunter
-            dungeon.setVisited(posRow, posCol, id);
-            steps++;
-            
+            power = dungeon.getManaLevel(posRow, posCol, cell);
+            count++;
+
             // Determine which direction leads to the highest mana in neighboring cells
-            next = dungeon.getNextStepDirection(posRow, posCol);
-            if (DungeonHunterParallel.DEBUG) System.out.println("Shadow " + getID() + " moving  " + next);
-            
-            // Move in the direction of highest mana, or stay if already at a local peak
-            switch (next) {
-                case STAY:
-                    // Found a local maximum - no neighbor has higher mana
-                    return power;
-                case LEFT:
-                    posRow--;
-                    break;
-                case RIGHT:
-                    posRow = posRow + 1;
-                    break;
-                case UP:
-                    posCol = posCol - 1;
-                    break;
-                case DOWN:
-                    posCol = posCol + 1;
-                    break;
-                case UP_LEFT:
-                    posCol = posCol - 1;
-                    posRow--;
-                    break;
-                case UP_RIGHT:
-                    posCol = posCol - 1;
-                    posRow = posRow + 1;
-                    break;
-                case DOWN_LEFT:
-                    posCol = posCol + 1;
-                    posRow--;
-                    break;
-                case DOWN_RIGHT:
-                    posCol = posCol + 1;
-                    posRow = posRow + 1;
-                    break;
+            int next = dungeon.getNextStep(posRow, posCol, cell);
+            if (DungeonHunterParallel.DEBUG) System.out.println("Shadow " + id + " moving  " + DIRECTIONS[next]);
+
+            // Found a local maximum - no neighbor has higher mana
+            if (next == STAY) {
+                outcome = PEAK;
+                break;
+            }
+            // Move in the direction of highest mana
+            posRow += STEP_ROW[next];
+            posCol += STEP_COL[next];
+            if (posRow < lo || posRow >= hi) {
+                outcome = LEFT_ROWS;
+                break;
             }
         }
-        // Reached a cell that another hunter already visited, so stop here
-        stopped = true;
-        return power;
+        c.row = posRow;
+        c.col = posCol;
+        c.steps = count;
+        c.power = power;
+        c.outcome = outcome;
+        return outcome;
     }
 
     // Provide getter methods to access this hunter's state
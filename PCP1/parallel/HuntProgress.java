@@ -0,0 +1,151 @@
+/**
+ * HuntProgress.java
+ *
+ * Time budget (--deadline) and live progress (--progress) for a hunt.
+ * Wraps the SearchSource of the run and hunts it in batches of BATCH
+ * searches; between batches a worker looks at a volatile expired flag
+ * and, once it is set, skips the rest of its range, so the engine returns
+ * the best peak of the searches that did run. Climbs are not interrupted
+ * half way, so the hunt ends within one batch per worker of the deadline.
+ *
+ * After each batch the worker adds to a LongAdder of completed searches
+ * and, if the batch beat it, publishes the best so far. Everything else
+ * happens on one daemon monitor thread: it sets the expired flag when the
+ * budget runs out and prints a progress line (best mana and position,
+ * searches done, grid points evaluated, throughput) every interval,
+ * reading only those counters and the map's HuntCounters, which are
+ * approximate while the hunt runs. The budget starts with the hunt, not
+ * with setup or --precompute.
+ *
+ * Like ManaPruner this works with any engine that hunts through
+ * SearchSource.hunt (forkjoin, virtual, fixed), not with the region engine.
+ */
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+public class HuntProgress implements SearchSource {
+
+    static final int BATCH = 16;  // searches hunted between looks at the deadline
+
+    // Best result so far, for the progress line
+    private static final class Best {
+        final int mana, row, col;
+
+        Best(int mana, int row, int col) {
+            this.mana = mana;
+            this.row = row;
+            this.col = col;
+        }
+    }
+
+    private final DungeonMapParallel dungeon;
+    private final SearchSource searches;
+    private final long deadlineMillis;  // 0: no deadline
+    private final long intervalMillis;  // 0: no progress lines
+
+    private final AtomicReference<Best> best = new AtomicReference<>(new Best(Integer.MIN_VALUE, -1, -1));
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private volatile boolean expired;
+    private volatile long expiredAfterMillis = -1;
+
+    private ScheduledExecutorService monitor;
+    private long startNanos;
+    private long lastNanos, lastCompleted, lastEvaluated;  // monitor thread only
+
+    public HuntProgress(DungeonMapParallel dungeon, SearchSource searches, long deadlineMillis, long intervalMillis) {
+        this.dungeon = dungeon;
+        this.searches = searches;
+        this.deadlineMillis = deadlineMillis;
+        this.intervalMillis = intervalMillis;
+    }
+
+    @Override
+    public int size() {
+        return searches.size();
+    }
+
+    @Override
+    public Cursor cursor(int from) {
+        return searches.cursor(from);
+    }
+
+    @Override
+    public int[] hunt(int from, int to) {
+        int[] result = {Integer.MIN_VALUE, -1, -1, -1};
+        for (int lo = from; lo < to; lo += BATCH) {
+            int hi = Math.min(to, lo + BATCH);
+            if (expired) {
+                // Out of time: the rest of this range never runs
+                skipped.add(to - lo);
+                break;
+            }
+            int[] batch = searches.hunt(lo, hi);
+            completed.add(hi - lo);
+            if (batch[1] >= 0) offer(batch[0], batch[2], batch[3]);
+            result = HuntEngine.better(result, batch);
+        }
+        return result;
+    }
+
+    // Publish a batch result if it raises the best so far
+    private void offer(int value, int row, int col) {
+        Best current = best.get();
+        while (value > current.mana) {
+            if (best.compareAndSet(current, new Best(value, row, col))) return;
+            current = best.get();
+        }
+    }
+
+    // Start the clock and the monitor thread; call just before the engine runs
+    public void start() {
+        startNanos = System.nanoTime();
+        lastNanos = startNanos;
+        lastEvaluated = dungeon.getGridPointsEvaluated();
+        monitor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "hunt-monitor");
+            t.setDaemon(true);
+            return t;
+        });
+        if (deadlineMillis > 0) monitor.schedule(this::expire, deadlineMillis, TimeUnit.MILLISECONDS);
+        if (intervalMillis > 0) monitor.scheduleAtFixedRate(this::report, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    // Stop the monitor once the engine has returned
+    public void stop() {
+        if (monitor != null) monitor.shutdownNow();
+    }
+
+    private void expire() {
+        expiredAfterMillis = (System.nanoTime() - startNanos) / 1_000_000;
+        expired = true;
+    }
+
+    // One progress line; rates are over the last interval
+    private void report() {
+        long now = System.nanoTime();
+        long done = completed.sum();
+        long evaluated = dungeon.getGridPointsEvaluated();
+        double seconds = Math.max(1, now - lastNanos) / 1e9;
+        Best b = best.get();
+        String where = b.row < 0 ? "none yet"
+                : String.format("mana %d at x=%.1f y=%.1f", b.mana, dungeon.getXcoord(b.row), dungeon.getYcoord(b.col));
+        System.err.printf("\t[%6.1f s] best %s; searches %d of %d (%.1f%s), %d points evaluated; %.0f searches/s, %.0f points/s%n",
+                (now - startNanos) / 1e9, where, done, size(), done * 100.0 / Math.max(1, size()), "%",
+                evaluated, (done - lastCompleted) / seconds, (evaluated - lastEvaluated) / seconds);
+        lastNanos = now;
+        lastCompleted = done;
+        lastEvaluated = evaluated;
+    }
+
+    // Statistics for the report, valid once the engine has returned
+    public boolean isExpired() { return expired; }
+    public long getExpiredAfterMillis() { return expiredAfterMillis; }
+    public long getDeadlineMillis() { return deadlineMillis; }
+    public long getCompleted() { return completed.sum(); }
+    public long getSkipped() { return skipped.sum(); }
+}
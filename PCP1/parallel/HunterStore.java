@@ -0,0 +1,109 @@
+/**
+ * HunterStore.java
+ *
+ * Per-hunter state of a whole run in parallel primitive arrays instead of
+ * one HuntParallel object per search. A hunter is its search index: the
+ * id is index + 1 and is not stored, the position is rows[i] / columns[i]
+ * and the step count is steps[i], whose top bit is the stopped flag
+ * (a hunter cannot take 2^31 steps on an int-indexed dungeon). That is 12
+ * bytes per hunter, against roughly 40 for a HuntParallel object plus 4
+ * for the reference to it, and the arrays are read without chasing a
+ * pointer per search.
+ *
+ * The start positions still come from a SearchSource, read as each range
+ * is hunted. The hunt loop is HuntParallel.hunt over an index, and
+ * it leaves each hunter's final position, steps and stop flag in the
+ * store for reporting once the run is over.
+ */
+
+public class HunterStore implements SearchSource {
+
+    private static final int STOPPED = 1 << 31;  // top bit of steps[i]
+
+    private final DungeonMapParallel dungeon;
+    private final SearchSource starts;
+    private final int[] rows;
+    private final int[] columns;
+    private final int[] steps;
+
+    public HunterStore(DungeonMapParallel dungeon, SearchSource starts) {
+        this.dungeon = dungeon;
+        this.starts = starts;
+        int numSearches = starts.size();
+        rows = new int[numSearches];
+        columns = new int[numSearches];
+        steps = new int[numSearches];
+    }
+
+    @Override
+    public int size() {
+        return steps.length;
+    }
+
+    // Start positions of the hunters, as handed out by the underlying source
+    @Override
+    public Cursor cursor(int from) {
+        return starts.cursor(from);
+    }
+
+    @Override
+    public int[] hunt(int from, int to) {
+        int localMax = Integer.MIN_VALUE;
+        int finder = -1;
+        Cursor cursor = starts.cursor(from);
+        HuntParallel.Climb climb = new HuntParallel.Climb();
+        for (int i = from; i < to; i++) {
+            HuntParallel start = cursor.next();
+            rows[i] = start.getPosRow();
+            columns[i] = start.getPosCol();
+            int lm = findManaPeak(this, i, climb);
+            if (lm > localMax) {
+                localMax = lm;
+                finder = i;
+            }
+        }
+        return finder < 0
+                ? new int[]{localMax, -1, -1, -1}
+                : new int[]{localMax, finder, rows[finder], columns[finder]};
+    }
+
+    // The search of hunter i of the store, through HuntParallel.hunt
+    static int findManaPeak(HunterStore hunters, int i, HuntParallel.Climb c) {
+        int power = HuntParallel.hunt(hunters.dungeon, i + 1, hunters.rows[i], hunters.columns[i], c);
+        hunters.finish(i, c.row, c.col, c.steps, c.outcome == HuntParallel.VISITED);
+        return power;
+    }
+
+    // Record where hunter i ended; also used by engines that run their own climb loop
+    void finish(int i, int posRow, int posCol, int count, boolean stopped) {
+        rows[i] = posRow;
+        columns[i] = posCol;
+        steps[i] = stopped ? count | STOPPED : count;
+    }
+
+    // Per-hunter results, valid once the hunt has run
+    public int getID(int i) { return i + 1; }
+    public int getPosRow(int i) { return rows[i]; }
+    public int getPosCol(int i) { return columns[i]; }
+    public int getSteps(int i) { return steps[i] & ~STOPPED; }
+    public boolean isStopped(int i) { return steps[i] < 0; }
+
+    // Totals over all hunters
+    public long getTotalSteps() {
+        long total = 0;
+        for (int s : steps) total += s & ~STOPPED;
+        return total;
+    }
+
+    public int getMaxSteps() {
+        int max = 0;
+        for (int s : steps) max = Math.max(max, s & ~STOPPED);
+        return max;
+    }
+
+    public int getStoppedCount() {
+        int count = 0;
+        for (int s : steps) if (s < 0) count++;
+        return count;
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * KeyedSearchSource.java
+ *
+ * Start positions derived from (seed, search index) alone, so any range
+ * of searches can be generated independently, by any worker, in any
+ * order, and setup does no work at all.
+ *
+ * This is the SplitMix64 generator, which is splittable and jumps ahead
+ * in O(1): the state of search i is seed + (2i + 1) * GAMMA, giving two
+ * consecutive outputs per search, one for the row and one for the column.
+ * Each output is mixed with the SplitMix64 finaliser and mapped onto
+ * [0, bound) with a 64-bit multiply. The sequence differs from
+ * java.util.Random's but is fully reproducible from the seed: the same
+ * seed and dungeon size always give the same starts (so the same peak),
+ * whatever the engine, thread count or split.
+ */
+
+public class KeyedSearchSource implements SearchSource {
+
+    private static final long GAMMA = 0x9E3779B97F4A7C15L;  // golden ratio increment
+
+    private final DungeonMapParallel dungeon;
+    private final int numSearches;
+    private final int rows, columns;
+    private final long seed;
+
+    public KeyedSearchSource(DungeonMapParallel dungeon, int numSearches, long seed) {
+        this.dungeon = dungeon;
+        this.numSearches = numSearches;
+        this.rows = dungeon.getRows();
+        this.columns = dungeon.getColumns();
+        this.seed = seed;
+    }
+
+    @Override
+    public int size() {
+        return numSearches;
+    }
+
+    // Start row and column of search `index`
+    public int startRow(int index) {
+        return bounded(mix(seed + (2L * index + 1) * GAMMA), rows);
+    }
+
+    public int startColumn(int index) {
+        return bounded(mix(seed + (2L * index + 2) * GAMMA), columns);
+    }
+
+    @Override
+    public Cursor cursor(int from) {
+        HuntParallel hunter = new HuntParallel(0, 0, 0, dungeon);
+        int[] next = {from};
+        return () -> {
+            int i = next[0]++;
+            hunter.restart(i + 1, startRow(i), startColumn(i));
+            return hunter;
+        };
+    }
+
+    // SplitMix64 output function
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // The high 32 bits of the output scaled onto [0, bound)
+    private static int bounded(long random, int bound) {
+        return (int) (((random >>> 32) * bound) >>> 32);
+    }
+}
@@ -0,0 +1,137 @@
+/**
+ * ManaCache.java
+ *
+ * Persistent mana values (--mana-cache <dir>). The mana of a cell only
+ * depends on the map's parameters, so a run can reuse every value an
+ * earlier run with the same gridSize and seed computed. Each map has one
+ * file in the cache directory, named after a hash of
+ * ManaFunction.cacheKey() (formula version, precision, kernel, grid,
+ * bounds and boss position); the full key is stored in the file's header
+ * and checked on open, so a changed formula or a hash collision is never
+ * served. With seed 0 the boss moves on every run, so every run would add
+ * a file that is never read again; the driver drops the cache then.
+ *
+ * The cells follow the header as one int per cell, row-major, memory
+ * mapped in 1 GB segments like MappedDungeonGrid. A value is
+ * stored encoded so that the zero bytes of a sparse, never written region
+ * mean "not cached". The file is filled as cells are evaluated. Any run
+ * writes the same value to a cell, so concurrent runs (and the threads of
+ * one run) share the file without locks: an aligned int is read either as
+ * it was before or after a write, never torn. Only creating the header
+ * and sizing the file take a FileLock.
+ */
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+public class ManaCache {
+
+    static final int MAGIC = 0x4D414E41;        // "MANA", in native order
+    private static final int HEADER_BYTES = 4096;
+    private static final int SEGMENT_SHIFT = 28;  // 2^28 cells = 1 GB per mapping
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private final Path file;
+    private final int columns;
+    private final MappedByteBuffer[] segments;
+
+    private ManaCache(Path file, int columns, MappedByteBuffer[] segments) {
+        this.file = file;
+        this.columns = columns;
+        this.segments = segments;
+    }
+
+    // The cache file of this mana function in dir, created if it does not exist yet
+    public static ManaCache open(Path dir, ManaFunction mana, int rows, int columns) throws IOException {
+        String key = mana.cacheKey();
+        Path file = dir.resolve("mana-" + hash(key) + ".cache");
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        long cells = (long) rows * columns;
+        Files.createDirectories(dir);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.nativeOrder());
+            FileLock lock = channel.lock();
+            try {
+                if (channel.size() == 0) {
+                    // New file: header, then extend it sparsely to its full size
+                    header.putInt(MAGIC).putInt(keyBytes.length).put(keyBytes).clear();
+                    channel.write(header, 0);
+                    channel.write(ByteBuffer.allocate(1), HEADER_BYTES + cells * 4 - 1);
+                } else {
+                    channel.read(header, 0);
+                    header.flip();
+                    byte[] saved = new byte[keyBytes.length];
+                    boolean same = header.remaining() >= 8 + saved.length && header.getInt() == MAGIC
+                            && header.getInt() == keyBytes.length;
+                    if (same) header.get(saved);
+                    if (!same || !MessageDigest.isEqual(saved, keyBytes))
+                        throw new IOException(file + " holds another mana map (delete it to start over).");
+                    // A run that died between the header and the resize
+                    if (channel.size() < HEADER_BYTES + cells * 4) channel.write(ByteBuffer.allocate(1), HEADER_BYTES + cells * 4 - 1);
+                }
+            } finally {
+                lock.release();
+            }
+            int segmentCount = (int) ((cells + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+            MappedByteBuffer[] segments = new MappedByteBuffer[segmentCount];
+            for (int s = 0; s < segmentCount; s++) {
+                long first = (long) s << SEGMENT_SHIFT;
+                long size = Math.min(SEGMENT_MASK + 1, cells - first) * 4;
+                segments[s] = channel.map(FileChannel.MapMode.READ_WRITE, HEADER_BYTES + first * 4, size);
+            }
+            return new ManaCache(file, columns, segments);
+        }
+    }
+
+    // First 16 hex digits of the SHA-256 of the key
+    private static String hash(String key) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            for (int i = 0; i < 8; i++) hex.append(String.format("%02x", digest[i]));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    private MappedByteBuffer segment(long cell) {
+        return segments[(int) (cell >>> SEGMENT_SHIFT)];
+    }
+
+    // Byte offset of a cell within its segment
+    private static int offset(long cell) {
+        return (int) (cell & SEGMENT_MASK) * 4;
+    }
+
+    // Cached mana of a cell, or DungeonGrid.UNCOMPUTED if no run has saved it yet
+    public int get(int x, int y) {
+        long cell = (long) x * columns + y;
+        return (int) INT.getOpaque(segment(cell), offset(cell)) ^ DungeonGrid.UNCOMPUTED;
+    }
+
+    // Save the mana of a cell for later runs
+    public void put(int x, int y, int value) {
+        long cell = (long) x * columns + y;
+        INT.setOpaque(segment(cell), offset(cell), value ^ DungeonGrid.UNCOMPUTED);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+}
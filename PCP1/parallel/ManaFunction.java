@@ -0,0 +1,190 @@
+/**
+ * ManaFunction.java
+ *
+ * The mana formula of the dungeon, separated from the cell storage so it
+ * can be evaluated one cell at a time (hunts) or for a contiguous row
+ * segment at once (precompute / exhaustive workloads).
+ *
+ * The batch entry point uses the SIMD kernel in VectorManaKernel when it
+ * has been enabled and the jdk.incubator.vector module is available,
+ * otherwise the scalar formula. The scalar path is bit-for-bit the
+ * original DungeonMap formula. The vector path uses the platform's vector
+ * sin/cos/exp/log, which may differ from java.lang.Math in the last ulp;
+ * after the conversion to PRECISION fixed point a cell can therefore be
+ * off by at most one unit (1/PRECISION mana), which is why it is opt-in.
+ *
+ * Many terms of the formula depend on only one coordinate. They are
+ * tabulated per row (x) and per column (y) when the function is built,
+ * so a cell evaluation only computes the genuinely 2-D terms. The tables
+ * hold exactly the values the inline expressions produced, and the terms
+ * are combined in the original order, so results are unchanged.
+ */
+
+import java.util.stream.IntStream;
+
+public class ManaFunction {
+
+    // Fixed-point difference the vector kernel may introduce
+    public static final int VECTOR_TOLERANCE = 1;
+
+    // Version of the formula in evaluate() and the kernels; bump it whenever a cell
+    // could come out different, so values saved by ManaCache are not reused
+    public static final int FORMULA_VERSION = 1;
+
+    // Sum of the amplitudes of the oscillating (sin/cos) terms of the formula
+    private static final double OSCILLATION_AMPLITUDE = 2 + 0.7 + 0.3 + 0.5 + 1.5;
+
+    private final double xmin, ymin;
+    private final double xstep, ystep;  // world distance between neighbouring cells
+    private final double bossX, bossY;
+    private final boolean vector;       // batch evaluation through VectorManaKernel
+
+    // Per-row tables (indexed by x), see the formula in evaluate()
+    final double[] xCoord;      // x_coord
+    final double[] sinX6;       // 0.2 * sin(x_coord / 6)
+    final double[] cosX5;       // 0.1 * cos(x_coord / 5)
+    final double[] sinX;        // 0.05 * sin(x_coord)
+    final double[] dxSquared;   // (x_coord - bossX)^2
+    final double[] dx15Squared; // (x_coord - bossX - 15)^2
+
+    // Per-column tables (indexed by y)
+    final double[] yCoord;      // y_coord
+    final double[] sinY5;       // 0.1 * sin(y_coord / 5)
+    final double[] cosY4;       // 0.15 * cos(y_coord / 4)
+    final double[] logY;        // -0.2 * log(|y_coord - 2 pi| + 0.1)
+    final double[] sinY;        // 0.1 * sin(y_coord)
+    final double[] dySquared;   // (y_coord - bossY)^2
+    final double[] dy10Squared; // (y_coord - bossY + 10)^2
+
+    public ManaFunction(double xmin, double xmax, double ymin, double ymax, int rows, int columns,
+                        double bossX, double bossY, boolean useVector) {
+        this.xmin = xmin;
+        this.ymin = ymin;
+        this.xstep = (xmax - xmin) / rows;
+        this.ystep = (ymax - ymin) / columns;
+        this.bossX = bossX;
+        this.bossY = bossY;
+        this.vector = useVector && vectorAvailable();
+
+        xCoord = new double[rows];
+        sinX6 = new double[rows];
+        cosX5 = new double[rows];
+        sinX = new double[rows];
+        dxSquared = new double[rows];
+        dx15Squared = new double[rows];
+        yCoord = new double[columns];
+        sinY5 = new double[columns];
+        cosY4 = new double[columns];
+        logY = new double[columns];
+        sinY = new double[columns];
+        dySquared = new double[columns];
+        dy10Squared = new double[columns];
+
+        // O(rows + columns) work, filled in parallel: index i < rows is row i, the rest are columns
+        IntStream.range(0, rows + columns).parallel().forEach(i -> {
+            if (i < rows) fillRowTerms(i);
+            else fillColumnTerms(i - rows);
+        });
+    }
+
+    private void fillRowTerms(int x) {
+        double x_coord = xmin + xstep * x;
+        double dx = x_coord - bossX;
+        double dx15 = x_coord - bossX - 15;
+        xCoord[x] = x_coord;
+        sinX6[x] = 0.2 * Math.sin(x_coord / 6.0);
+        cosX5[x] = 0.1 * Math.cos(x_coord / 5.0);
+        sinX[x] = 0.05 * Math.sin(x_coord);
+        dxSquared[x] = dx * dx;
+        dx15Squared[x] = dx15 * dx15;
+    }
+
+    private void fillColumnTerms(int y) {
+        double y_coord = ymin + ystep * y;
+        double dy = y_coord - bossY;
+        double dy10 = y_coord - bossY + 10;
+        yCoord[y] = y_coord;
+        sinY5[y] = 0.1 * Math.sin(y_coord / 5.0);
+        cosY4[y] = 0.15 * Math.cos(y_coord / 4.0);
+        logY[y] = -0.2 * Math.log(Math.abs(y_coord - Math.PI * 2) + 0.1);
+        sinY[y] = 0.1 * Math.sin(y_coord);
+        dySquared[y] = dy * dy;
+        dy10Squared[y] = dy10 * dy10;
+    }
+
+    // True if the incubating Vector API module was resolved at startup (--add-modules jdk.incubator.vector)
+    public static boolean vectorAvailable() {
+        return ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+    }
+
+    public boolean isVector() {
+        return vector;
+    }
+
+    // Everything the value of a cell depends on, exactly; equal keys mean equal mana maps
+    public String cacheKey() {
+        return String.format("mana formula %d, precision %d, %s kernel, %d x %d cells, x %s + %s i, y %s + %s j, boss %s %s",
+                FORMULA_VERSION, DungeonMapParallel.PRECISION, vector ? "vector" : "scalar",
+                xCoord.length, yCoord.length, Double.toHexString(xmin), Double.toHexString(xstep),
+                Double.toHexString(ymin), Double.toHexString(ystep), Double.toHexString(bossX), Double.toHexString(bossY));
+    }
+
+    // Mana of a single grid cell as a fixed-point value
+    public int evaluate(int x, int y) {
+        // World coordinates and squared distance from the boss
+        double x_coord = xCoord[x];
+        double y_coord = yCoord[y];
+        double distanceSquared = dxSquared[x] + dySquared[y];
+
+        // Calculate the complex mana formula with multiple sine/cosine components
+        // and exponential decay based on distance from the boss; the 1-D terms come from the tables
+        double mana = (2 * Math.sin(x_coord + sinY5[y] + Math.PI / 2) *
+                Math.cos((y_coord + cosX5[x] + Math.PI / 2) / 2.0) +
+            0.7 * Math.sin((x_coord * 0.5) + (y_coord * 0.3) + sinX6[x] + Math.PI / 2) +
+            0.3 * Math.sin((x_coord * 1.5) - (y_coord * 0.8) + cosY4[y]) +
+            logY[y] +
+            0.5 * Math.sin((x_coord * y_coord) / 4.0 + sinX[x]) +
+            1.5 * Math.cos((x_coord + y_coord) / 5.0 + sinY[y]) +
+            3.0 * Math.exp(-0.03 * (dx15Squared[x] + dy10Squared[y])) +
+            8.0 * Math.exp(-0.01 * distanceSquared) +
+            2.0 / (1.0 + 0.05 * distanceSquared));
+
+        // Convert to fixed-point integer representation for consistency
+        return (int) (DungeonMapParallel.PRECISION * mana);
+    }
+
+    // An upper bound (fixed point) on the mana of every cell in rows x0..x1 and
+    // columns y0..y1. Each oscillating term is bounded by its amplitude, and the
+    // log, Gaussian and 1/(1 + d^2) terms by their value at the point of the
+    // rectangle nearest to where they peak. The bound allows for rounding and
+    // for the vector kernel's tolerance.
+    public int upperBound(int x0, int x1, int y0, int y1) {
+        double xlo = xCoord[x0], xhi = xCoord[x1];
+        double ylo = yCoord[y0], yhi = yCoord[y1];
+        double dx = distance(bossX, xlo, xhi);
+        double dy = distance(bossY, ylo, yhi);
+        double dx15 = distance(bossX + 15, xlo, xhi);
+        double dy10 = distance(bossY - 10, ylo, yhi);
+        double nearestSquared = dx * dx + dy * dy;
+        double bound = OSCILLATION_AMPLITUDE +
+            -0.2 * Math.log(distance(Math.PI * 2, ylo, yhi) + 0.1) +
+            3.0 * Math.exp(-0.03 * (dx15 * dx15 + dy10 * dy10)) +
+            8.0 * Math.exp(-0.01 * nearestSquared) +
+            2.0 / (1.0 + 0.05 * nearestSquared);
+        return (int) Math.ceil(DungeonMapParallel.PRECISION * bound) + 1 + VECTOR_TOLERANCE;
+    }
+
+    // Distance from p to the interval [lo, hi]
+    private static double distance(double p, double lo, double hi) {
+        return p < lo ? lo - p : p > hi ? p - hi : 0;
+    }
+
+    // Mana of the row segment (x, y0) .. (x, y0 + count - 1), written to out[offset ..]
+    public void evaluateRow(int x, int y0, int count, int[] out, int offset) {
+        if (vector) {
+            VectorManaKernel.evaluateRow(this, x, y0, count, out, offset);
+            return;
+        }
+        for (int i = 0; i < count; i++) out[offset + i] = evaluate(x, y0 + i);
+    }
+}
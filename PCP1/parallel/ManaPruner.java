@@ -0,0 +1,194 @@
+/**
+ * ManaPruner.java
+ *
+ * Optional pruning (--prune): stop hunting as soon as it is certain that
+ * no remaining search can change the reported Dungeon Master.
+ *
+ * Every search climbs to a local maximum (a cell with no strictly higher
+ * neighbour) or merges into a path that another search climbs to one, so
+ * the result of a run is the highest local maximum any start leads to.
+ * ManaFunction.upperBound gives a cheap bound on the mana of a whole
+ * block of cells; one is computed per TILE x TILE tile up front. Whenever
+ * the shared best-so-far improves, the thread that improved it checks
+ * the tiles whose bound is not below the best: tiles are subdivided while
+ * their quarters can be bounded below the best, and the cells left are
+ * evaluated. If none of them is a local maximum at least as high as the
+ * best, other than the best cell itself, no search can beat (or tie at
+ * another cell) the best, and every search not yet started is skipped.
+ *
+ * A tile bound alone cannot say that a search starting in it is
+ * hopeless, since climbs leave their tile, so nothing is skipped before
+ * such a certificate exists; the reported mana and position are always
+ * those of an unpruned run. Skipped searches and each check are counted.
+ *
+ * The pruner wraps the SearchSource of the run and hunts it in batches of
+ * CHECK_BATCH searches, so it works with any engine that hunts through
+ * SearchSource.hunt (forkjoin, virtual, fixed).
+ */
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+public class ManaPruner implements SearchSource {
+
+    static final int TILE = TiledDungeonGrid.TILE;
+    static final int CHECK_BATCH = 16;   // searches hunted between looks at the certificate
+    static final int LEAF = 8;           // blocks this small are evaluated cell by cell
+
+    // Best result so far: mana and where it was found
+    private static final class Best {
+        final int mana, row, col;
+
+        Best(int mana, int row, int col) {
+            this.mana = mana;
+            this.row = row;
+            this.col = col;
+        }
+    }
+
+    private final DungeonMapParallel dungeon;
+    private final ManaFunction mana;
+    private final SearchSource searches;
+    private final int rows, columns;
+    private final int tileRows, tileColumns;
+    private final int[] tileBound;  // upper bound on the mana of each tile
+
+    private final AtomicReference<Best> best = new AtomicReference<>(new Best(Integer.MIN_VALUE, -1, -1));
+    private final AtomicBoolean checking = new AtomicBoolean();
+    private volatile boolean certified;
+
+    // Statistics
+    private final LongAdder skipped = new LongAdder();
+    private final AtomicLong checks = new AtomicLong();
+    private final AtomicLong cellsChecked = new AtomicLong();
+    private volatile int tilesAboveBest;
+
+    public ManaPruner(DungeonMapParallel dungeon, SearchSource searches) {
+        this.dungeon = dungeon;
+        this.mana = dungeon.getManaFunction();
+        this.searches = searches;
+        this.rows = dungeon.getRows();
+        this.columns = dungeon.getColumns();
+        this.tileRows = (rows + TILE - 1) / TILE;
+        this.tileColumns = (columns + TILE - 1) / TILE;
+        this.tileBound = new int[tileRows * tileColumns];
+        this.tilesAboveBest = tileBound.length;
+        for (int t = 0; t < tileBound.length; t++) {
+            int x0 = (t / tileColumns) * TILE, y0 = (t % tileColumns) * TILE;
+            tileBound[t] = mana.upperBound(x0, Math.min(rows, x0 + TILE) - 1, y0, Math.min(columns, y0 + TILE) - 1);
+        }
+    }
+
+    @Override
+    public int size() {
+        return searches.size();
+    }
+
+    @Override
+    public Cursor cursor(int from) {
+        return searches.cursor(from);
+    }
+
+    @Override
+    public int[] hunt(int from, int to) {
+        int[] result = {Integer.MIN_VALUE, -1, -1, -1};
+        for (int lo = from; lo < to; lo += CHECK_BATCH) {
+            int hi = Math.min(to, lo + CHECK_BATCH);
+            if (certified) {
+                // Nothing left can change the answer
+                skipped.add(to - lo);
+                break;
+            }
+            int[] batch = searches.hunt(lo, hi);
+            if (batch[1] >= 0) offer(batch[0], batch[2], batch[3]);
+            result = HuntEngine.better(result, batch);
+        }
+        return result;
+    }
+
+    // Publish a search result; if it raises the best, try to certify it
+    private void offer(int value, int row, int col) {
+        Best current = best.get();
+        while (value > current.mana) {
+            Best raised = new Best(value, row, col);
+            if (best.compareAndSet(current, raised)) {
+                certify();
+                return;
+            }
+            current = best.get();
+        }
+    }
+
+    // Look for a local maximum that could beat (or tie elsewhere with) the best; if none, certify.
+    // One thread checks at a time; a raise that lands during a check gets a check of its own.
+    private void certify() {
+        while (!certified && checking.compareAndSet(false, true)) {
+            Best b = best.get();
+            try {
+                checks.incrementAndGet();
+                int above = 0;
+                boolean rival = false;
+                for (int t = 0; t < tileBound.length && !rival; t++) {
+                    if (tileBound[t] < b.mana) continue;
+                    above++;
+                    int x0 = (t / tileColumns) * TILE, y0 = (t % tileColumns) * TILE;
+                    rival = hasRival(b, x0, Math.min(rows, x0 + TILE) - 1, y0, Math.min(columns, y0 + TILE) - 1);
+                }
+                if (!rival) {
+                    tilesAboveBest = above;
+                    certified = true;
+                }
+            } finally {
+                checking.set(false);
+            }
+            if (best.get() == b) return;
+        }
+    }
+
+    // Whether the block rows x0..x1, columns y0..y1 holds a local maximum >= b other than b's cell
+    private boolean hasRival(Best b, int x0, int x1, int y0, int y1) {
+        if (mana.upperBound(x0, x1, y0, y1) < b.mana) return false;
+        if (x1 - x0 >= LEAF || y1 - y0 >= LEAF) {
+            int xm = (x0 + x1) >>> 1, ym = (y0 + y1) >>> 1;
+            return hasRival(b, x0, xm, y0, ym) ||
+                    (ym < y1 && hasRival(b, x0, xm, ym + 1, y1)) ||
+                    (xm < x1 && hasRival(b, xm + 1, x1, y0, ym)) ||
+                    (xm < x1 && ym < y1 && hasRival(b, xm + 1, x1, ym + 1, y1));
+        }
+        long cells = 0;
+        try {
+            for (int x = x0; x <= x1; x++) {
+                for (int y = y0; y <= y1; y++) {
+                    cells++;
+                    int value = dungeon.getManaLevel(x, y);
+                    if (value < b.mana || (x == b.row && y == b.col)) continue;
+                    if (isLocalMaximum(x, y, value)) return true;
+                }
+            }
+            return false;
+        } finally {
+            cellsChecked.addAndGet(cells);
+        }
+    }
+
+    // No neighbour strictly higher: where a climb through this cell would stop
+    private boolean isLocalMaximum(int x, int y, int value) {
+        for (int d = 1; d < HuntParallel.DIRECTION_COUNT; d++) {
+            int nx = x + HuntParallel.STEP_ROW[d], ny = y + HuntParallel.STEP_COL[d];
+            if (nx >= 0 && nx < rows && ny >= 0 && ny < columns && dungeon.getManaLevel(nx, ny) > value) return false;
+        }
+        return true;
+    }
+
+    // Statistics for the report
+    public boolean isCertified() { return certified; }
+    public long getSkipped() { return skipped.sum(); }
+    public long getChecks() { return checks.get(); }
+    public long getCellsChecked() { return cellsChecked.get(); }
+    public int getTileCount() { return tileBound.length; }
+
+    // Tiles whose bound reached the best at the certifying check
+    public int getTilesAboveBest() { return tilesAboveBest; }
+}
@@ -0,0 +1,144 @@
+/**
+ * MappedDungeonGrid.java
+ *
+ * DungeonGrid stored off-heap in a memory-mapped scratch file, for
+ * dungeons whose grid does not fit in the Java heap (or in one int-indexed
+ * array). Cells are addressed with long arithmetic and the file is split
+ * into MappedByteBuffer segments of SEGMENT_CELLS cells, since a single
+ * mapping is limited to 2 GB. The heap only holds the segment table; the
+ * OS page cache holds (and evicts) the cells.
+ *
+ * Each cell is 8 bytes: the mana value and the visitor id. Both are stored
+ * encoded so that an all-zero cell means UNCOMPUTED / UNVISITED. The file
+ * is created sparse and never initialised, so untouched regions of the
+ * dungeon cost neither writes nor disk space. The scratch file is deleted
+ * as soon as it is mapped; the mapping keeps it alive until exit.
+ */
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class MappedDungeonGrid implements DungeonGrid {
+
+    private static final int CELL_BYTES = 8;          // int mana + int visitor
+    private static final int SEGMENT_SHIFT = 27;      // 2^27 cells = 1 GB per mapping
+    private static final long SEGMENT_MASK = (1L << SEGMENT_SHIFT) - 1;
+
+    // Native-order int view of a direct buffer, supports the atomic access modes
+    private static final VarHandle INT = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private final int rows, columns;
+    private final MappedByteBuffer[] segments;
+
+    public MappedDungeonGrid(int rows, int columns, Path scratchDir) {
+        this.rows = rows;
+        this.columns = columns;
+        long cells = (long) rows * columns;
+        int segmentCount = (int) ((cells + SEGMENT_MASK) >>> SEGMENT_SHIFT);
+        segments = new MappedByteBuffer[segmentCount];
+        try {
+            Files.createDirectories(scratchDir);
+            Path file = Files.createTempFile(scratchDir, "dungeon", ".grid");
+            try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw");
+                 FileChannel channel = raf.getChannel()) {
+                raf.setLength(cells * CELL_BYTES);  // sparse: no blocks until a cell is written
+                for (int s = 0; s < segmentCount; s++) {
+                    long first = (long) s << SEGMENT_SHIFT;
+                    long size = Math.min(SEGMENT_MASK + 1, cells - first) * CELL_BYTES;
+                    segments[s] = channel.map(FileChannel.MapMode.READ_WRITE, first * CELL_BYTES, size);
+                    segments[s].order(ByteOrder.nativeOrder());
+                }
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not map dungeon grid in " + scratchDir, e);
+        }
+    }
+
+    // Long row-major cell index
+    private long index(int x, int y) {
+        return (long) x * columns + y;
+    }
+
+    private MappedByteBuffer segment(long cell) {
+        return segments[(int) (cell >>> SEGMENT_SHIFT)];
+    }
+
+    // Byte offset of a cell's mana within its segment; the visitor follows 4 bytes later
+    private static int offset(long cell) {
+        return (int) (cell & SEGMENT_MASK) * CELL_BYTES;
+    }
+
+    // A zero word decodes to UNCOMPUTED (mana) / UNVISITED (visitor)
+    private static int encodeMana(int mana) { return mana ^ UNCOMPUTED; }
+    private static int decodeMana(int word) { return word ^ UNCOMPUTED; }
+    private static int encodeVisitor(int id) { return id - UNVISITED; }
+    private static int decodeVisitor(int word) { return word + UNVISITED; }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public int getColumns() {
+        return columns;
+    }
+
+    @Override
+    public int getMana(int x, int y) {
+        long cell = index(x, y);
+        return decodeMana((int) INT.get(segment(cell), offset(cell)));
+    }
+
+    @Override
+    public void setMana(int x, int y, int value) {
+        long cell = index(x, y);
+        INT.set(segment(cell), offset(cell), encodeMana(value));
+    }
+
+    @Override
+    public int getVisitor(int x, int y) {
+        long cell = index(x, y);
+        return decodeVisitor((int) INT.get(segment(cell), offset(cell) + 4));
+    }
+
+    @Override
+    public void setVisitor(int x, int y, int id) {
+        long cell = index(x, y);
+        INT.set(segment(cell), offset(cell) + 4, encodeVisitor(id));
+    }
+
+    @Override
+    public int getManaAcquire(int x, int y) {
+        long cell = index(x, y);
+        return decodeMana((int) INT.getAcquire(segment(cell), offset(cell)));
+    }
+
+    @Override
+    public void setManaRelease(int x, int y, int value) {
+        long cell = index(x, y);
+        INT.setRelease(segment(cell), offset(cell), encodeMana(value));
+    }
+
+    @Override
+    public boolean compareAndSetMana(int x, int y, int expected, int value) {
+        long cell = index(x, y);
+        return INT.compareAndSet(segment(cell), offset(cell), encodeMana(expected), encodeMana(value));
+    }
+
+    @Override
+    public boolean compareAndSetVisitor(int x, int y, int expected, int id) {
+        long cell = index(x, y);
+        return INT.compareAndSet(segment(cell), offset(cell) + 4, encodeVisitor(expected), encodeVisitor(id));
+    }
+}
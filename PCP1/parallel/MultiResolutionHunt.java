@@ -0,0 +1,199 @@
+/**
+ * MultiResolutionHunt.java
+ *
+ * Coarse-to-fine search (--multires r1,r2,...). The first level hunts the
+ * whole dungeon on a coarse grid (r1 points per unit, with the usual
+ * search density, so r1/RESOLUTION of the searches) using the selected
+ * engine. The distinct peaks its hunters climbed to are ranked by mana,
+ * and each finer level is seeded only with hunters on every cell of a
+ * window around the top-K peaks of the level before (WINDOW cells of the
+ * coarser level in every direction). The last level is always the normal
+ * full-resolution grid, so the Dungeon Master is reported in the usual
+ * form. All levels are the same dungeon: same bounds, same boss, the same
+ * mana formula sampled more or less finely (a seed of 0 is replaced by
+ * one random seed for all levels).
+ *
+ * A coarse grid can miss a narrow peak, so the answer is approximate.
+ * To measure that, the true maximum of the full-resolution grid is found
+ * with a branch-and-bound scan (ManaFunction.upperBound prunes blocks that
+ * cannot beat the answer, the rest is evaluated) and compared with the
+ * answer. The report gives each level's hunters, evaluations and time.
+ */
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+public class MultiResolutionHunt {
+
+    static final int DEFAULT_TOP_K = 8;
+    static final int WINDOW = 2;   // seed window radius around a peak, in cells of the coarser level
+    static final int LEAF = 8;     // exhaustive scan evaluates blocks this small cell by cell
+
+    // Outcome of one level, for the report
+    private static final class Level {
+        int resolution, rows, columns, hunters, peaks;
+        long evaluated, millis;
+        int best = Integer.MIN_VALUE;
+    }
+
+    static void run(HuntOptions options, int gateSize, int numSearches, int randomSeed, long searchSeed) {
+        double xmin = -gateSize, xmax = gateSize, ymin = -gateSize, ymax = gateSize;
+        int[] resolutions = options.multires;
+        List<Level> levels = new ArrayList<>();
+        DungeonMapParallel dungeon = null, previous = null;
+        List<int[]> peaks = new ArrayList<>();
+        int[] result = {Integer.MIN_VALUE, -1, -1, -1};
+        long start = System.currentTimeMillis();
+        // Seed 0 would place a new random boss on every level: pick one seed for all of them,
+        // as DistributedHunt.coordinate does for its workers
+        if (randomSeed == 0) randomSeed = 1 + new Random().nextInt(Integer.MAX_VALUE - 1);
+
+        for (int l = 0; l < resolutions.length; l++) {
+            Level level = new Level();
+            level.resolution = resolutions[l];
+            dungeon = new DungeonMapParallel(xmin, xmax, ymin, ymax, randomSeed, options, level.resolution);
+            level.rows = dungeon.getRows();
+            level.columns = dungeon.getColumns();
+
+            // Uniform starts on the coarsest level, windows around the previous peaks after that
+            SearchSource starts = l == 0
+                    ? SearchSource.create(options, dungeon, (int) ((long) numSearches * level.resolution / DungeonMapParallel.RESOLUTION), searchSeed)
+                    : SearchSource.of(seedAround(dungeon, previous, peaks, resolutions[l - 1], level.resolution));
+            HunterStore hunters = new HunterStore(dungeon, starts);
+            level.hunters = hunters.size();
+
+            long levelStart = System.currentTimeMillis();
+            try (HuntEngine engine = HuntEngine.create(options, dungeon)) {
+                result = engine.run(hunters);
+            }
+            level.millis = System.currentTimeMillis() - levelStart;
+            level.evaluated = dungeon.getGridPointsEvaluated();
+            level.best = result[0];
+
+            peaks = topPeaks(dungeon, hunters, options.topK);
+            level.peaks = peaks.size();
+            levels.add(level);
+            previous = dungeon;
+        }
+        long time = System.currentTimeMillis() - start;
+
+        // The true answer on the full-resolution grid, for the accuracy line
+        int[] exhaustive = exhaustiveMaximum(dungeon.getManaFunction(), dungeon.getRows(), dungeon.getColumns(),
+                result[1] >= 0 ? new int[]{result[0], result[2], result[3]} : new int[]{Integer.MIN_VALUE, -1, -1});
+
+        report(options, gateSize, levels, dungeon, result, exhaustive, time);
+    }
+
+    // Hunters on every cell of a window around each peak of the coarser map
+    private static HuntParallel[] seedAround(DungeonMapParallel dungeon, DungeonMapParallel coarse, List<int[]> peaks,
+                                             int coarseResolution, int resolution) {
+        int radius = (WINDOW * resolution + coarseResolution - 1) / coarseResolution;
+        double xmin = coarse.getXcoord(0), ymin = coarse.getYcoord(0);
+        Set<Long> cells = new LinkedHashSet<>();  // windows may overlap
+        for (int[] peak : peaks) {
+            // The fine cell nearest to the peak's world position
+            int row = (int) Math.round((coarse.getXcoord(peak[0]) - xmin) * resolution);
+            int col = (int) Math.round((coarse.getYcoord(peak[1]) - ymin) * resolution);
+            for (int x = Math.max(0, row - radius); x <= Math.min(dungeon.getRows() - 1, row + radius); x++)
+                for (int y = Math.max(0, col - radius); y <= Math.min(dungeon.getColumns() - 1, col + radius); y++)
+                    cells.add((long) x * dungeon.getColumns() + y);
+        }
+        HuntParallel[] searches = new HuntParallel[cells.size()];
+        int i = 0;
+        for (long cell : cells) {
+            searches[i] = new HuntParallel(i + 1, (int) (cell / dungeon.getColumns()), (int) (cell % dungeon.getColumns()), dungeon);
+            i++;
+        }
+        return searches;
+    }
+
+    // The k highest distinct peaks the hunters climbed to, as {row, col}
+    private static List<int[]> topPeaks(DungeonMapParallel dungeon, HunterStore hunters, int k) {
+        Map<Long, int[]> peaks = new LinkedHashMap<>();
+        for (int i = 0; i < hunters.size(); i++) {
+            if (hunters.isStopped(i)) continue;  // merged into another hunter's path
+            int row = hunters.getPosRow(i), col = hunters.getPosCol(i);
+            peaks.computeIfAbsent((long) row * dungeon.getColumns() + col,
+                    cell -> new int[]{row, col, dungeon.getGrid().getMana(row, col)});
+        }
+        List<int[]> ranked = new ArrayList<>(peaks.values());
+        ranked.sort(Comparator.comparingInt((int[] p) -> p[2]).reversed());
+        return new ArrayList<>(ranked.subList(0, Math.min(k, ranked.size())));
+    }
+
+    // Branch and bound over the whole grid for a cell higher than known = {mana, row, col};
+    // returns {mana, row, col, cells evaluated} of the maximum
+    static int[] exhaustiveMaximum(ManaFunction mana, int rows, int columns, int[] known) {
+        int[] best = {known[0], known[1], known[2], 0};
+        scan(mana, 0, rows - 1, 0, columns - 1, best);
+        return best;
+    }
+
+    private static void scan(ManaFunction mana, int x0, int x1, int y0, int y1, int[] best) {
+        if (mana.upperBound(x0, x1, y0, y1) <= best[0]) return;
+        if (x1 - x0 >= LEAF || y1 - y0 >= LEAF) {
+            int xm = (x0 + x1) >>> 1, ym = (y0 + y1) >>> 1;
+            scan(mana, x0, xm, y0, ym, best);
+            if (ym < y1) scan(mana, x0, xm, ym + 1, y1, best);
+            if (xm < x1) scan(mana, xm + 1, x1, y0, ym, best);
+            if (xm < x1 && ym < y1) scan(mana, xm + 1, x1, ym + 1, y1, best);
+            return;
+        }
+        for (int x = x0; x <= x1; x++) {
+            for (int y = y0; y <= y1; y++) {
+                int value = mana.evaluate(x, y);
+                best[3]++;
+                if (value > best[0]) {
+                    best[0] = value;
+                    best[1] = x;
+                    best[2] = y;
+                }
+            }
+        }
+    }
+
+    private static void report(HuntOptions options, int gateSize, List<Level> levels, DungeonMapParallel dungeon,
+                               int[] result, int[] exhaustive, long time) {
+        long fullPoints = (long) dungeon.getRows() * dungeon.getColumns();
+        System.out.printf("\t dungeon size: %d,\n", gateSize);
+        System.out.printf("\t rows: %d, columns: %d\n", dungeon.getRows(), dungeon.getColumns());
+        System.out.printf("\t x: [%f, %f], y: [%f, %f]\n", (double) -gateSize, (double) gateSize,
+                (double) -gateSize, (double) gateSize);
+        System.out.printf("\t Number searches: %d\n", levels.stream().mapToLong(l -> l.hunters).sum());
+
+        System.out.printf("\n\t time: %d ms\n", time);
+        long total = 0;
+        for (int l = 0; l < levels.size(); l++) {
+            Level level = levels.get(l);
+            total += level.evaluated;
+            System.out.printf("\tlevel %d: resolution %d (%d x %d), %d hunters, %d points evaluated (%.1f%s of the level), "
+                            + "%d ms, best mana %d, top peaks kept: %d\n",
+                    l, level.resolution, level.rows, level.columns, level.hunters, level.evaluated,
+                    level.evaluated * 100.0 / ((double) level.rows * level.columns), "%", level.millis,
+                    level.best, level.peaks);
+        }
+        System.out.printf("\tnumber dungeon grid points evaluated: %d  (%.2f%s of the full-resolution grid, top-K %d)\n",
+                total, total * 100.0 / fullPoints, "%", options.topK);
+        if (exhaustive[1] >= 0) {
+            boolean exact = result[1] >= 0 && exhaustive[0] == result[0];
+            System.out.printf("\texhaustive maximum: mana %d at x=%.1f y=%.1f (bounded scan, %d cells evaluated); %s\n",
+                    exhaustive[0], dungeon.getXcoord(exhaustive[1]), dungeon.getYcoord(exhaustive[2]), exhaustive[3],
+                    exact ? "answer is exact"
+                          : String.format("answer is %d below (%.3f%s)", exhaustive[0] - result[0],
+                                  (exhaustive[0] - (double) result[0]) * 100.0 / Math.abs((double) exhaustive[0]), "%"));
+        }
+
+        if (result[1] >= 0) {
+            System.out.printf("Dungeon Master (mana %d) found at:  ", result[0]);
+            System.out.printf("x=%.1f y=%.1f\n\n", dungeon.getXcoord(result[2]), dungeon.getYcoord(result[3]));
+        } else {
+            System.out.println("No finder (no searches ran)");
+        }
+    }
+}
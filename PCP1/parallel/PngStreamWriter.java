@@ -0,0 +1,228 @@
+/**
+ * PngStreamWriter.java
+ *
+ * Streaming PNG encoder for the dungeon maps. BufferedImage + ImageIO need
+ * the whole image in the heap (and fail once width * height no longer fits
+ * in an array); this writer asks for the image a chunk of scanlines at a
+ * time and never holds more than a bounded number of chunks, so its memory
+ * is O(width) whatever the height.
+ *
+ * Chunks are rendered, filtered (PNG filter Sub) and deflated in parallel,
+ * pigz style: each one is compressed on its own with a raw Deflater and
+ * ends with a sync flush (the last one with the final block), so the
+ * pieces simply concatenate into one valid deflate stream. Each chunk's
+ * Adler-32 is computed with it and combined in order by the writer
+ * (adler32Combine, as in zlib). The output is the PNG signature, IHDR,
+ * one IDAT for the zlib header, one IDAT per chunk, one for the Adler-32
+ * and IEND, written in order through a FileChannel.
+ *
+ * Several images of the same size can be written from one Layers
+ * callback, which renders a chunk of rows of all of them at once (the
+ * search and path maps come from one pass over the grid); each image is
+ * then filtered, deflated and written to its own file.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.Adler32;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+public class PngStreamWriter {
+
+    static final int CHUNK_BYTES = 1 << 20;  // raw scanline bytes compressed per task (at least one row)
+    static final int LEVEL = 4;              // deflate level: fast, but still small files for smooth maps
+
+    private static final byte[] SIGNATURE = {(byte) 137, 'P', 'N', 'G', '\r', '\n', 26, '\n'};
+    private static final byte[] ZLIB_HEADER = {0x78, 0x5E};  // deflate, 32K window, "fast" level hint
+    private static final int ADLER_BASE = 65521;
+
+    // Fills image rows [first, first + count), top row first, into rgb as 0xRRGGBB,
+    // width pixels per row. Called from several threads at once for different rows.
+    interface Rows {
+        void render(int first, int count, int[] rgb);
+    }
+
+    // As Rows, for several images of the same size: fills rgb[i] with the rows of image i
+    interface Layers {
+        void render(int first, int count, int[][] rgb);
+    }
+
+    // One compressed chunk of scanlines
+    private static final class Chunk {
+        byte[] data;
+        int length;
+        long adler, rawLength, crc;
+    }
+
+    // Write a width x height RGB PNG whose rows come from rows, compressing on the common pool
+    static void write(Path file, int width, int height, Rows rows) throws IOException {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        write(file, width, height, rows, pool, 2 * pool.getParallelism());
+    }
+
+    // As above, compressing chunks on pool with at most inFlight of them pending
+    // (Runnable::run and 1 encode on the calling thread, for small images)
+    static void write(Path file, int width, int height, Rows rows, Executor pool, int inFlight) throws IOException {
+        write(new Path[]{file}, width, height, (first, count, rgb) -> rows.render(first, count, rgb[0]), pool, inFlight);
+    }
+
+    // Write one width x height RGB PNG per file, image i into files[i], rendering each chunk of
+    // rows of all of them with one call to layers, compressing on the common pool
+    static void write(Path[] files, int width, int height, Layers layers) throws IOException {
+        ForkJoinPool pool = ForkJoinPool.commonPool();
+        write(files, width, height, layers, pool, 2 * pool.getParallelism());
+    }
+
+    static void write(Path[] files, int width, int height, Layers layers, Executor pool, int inFlight) throws IOException {
+        int rowBytes = 1 + 3 * width;
+        int rowsPerChunk = Math.max(1, CHUNK_BYTES / rowBytes);
+        int chunks = (height + rowsPerChunk - 1) / rowsPerChunk;
+
+        FileChannel[] channels = new FileChannel[files.length];
+        try {
+            ByteBuffer header = ByteBuffer.allocate(13);
+            header.putInt(width).putInt(height)
+                  .put((byte) 8)    // bits per sample
+                  .put((byte) 2)    // colour type: RGB
+                  .put((byte) 0).put((byte) 0).put((byte) 0);  // deflate, adaptive filters, no interlace
+            for (int i = 0; i < files.length; i++) {
+                channels[i] = FileChannel.open(files[i], StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+                channels[i].write(ByteBuffer.wrap(SIGNATURE));
+                writeChunk(channels[i], "IHDR", header.array(), 13, crc("IHDR", header.array(), 13));
+                writeChunk(channels[i], "IDAT", ZLIB_HEADER, 2, crc("IDAT", ZLIB_HEADER, 2));
+            }
+
+            // Compress ahead of the writer, but never more than inFlight chunks at a time
+            ArrayDeque<CompletableFuture<Chunk[]>> pending = new ArrayDeque<>();
+            long[] adler = new long[files.length];
+            Arrays.fill(adler, 1);
+            int next = 0;
+            while (next < chunks || !pending.isEmpty()) {
+                while (next < chunks && pending.size() < inFlight) {
+                    int first = next * rowsPerChunk;
+                    int count = Math.min(rowsPerChunk, height - first);
+                    boolean last = ++next == chunks;
+                    pending.add(CompletableFuture.supplyAsync(
+                            () -> compress(layers, files.length, width, first, count, last), pool));
+                }
+                Chunk[] chunk;
+                try {
+                    chunk = pending.remove().join();
+                } catch (CompletionException e) {
+                    pending.forEach(f -> f.cancel(false));
+                    throw e;
+                }
+                for (int i = 0; i < files.length; i++) {
+                    writeChunk(channels[i], "IDAT", chunk[i].data, chunk[i].length, chunk[i].crc);
+                    adler[i] = adler32Combine(adler[i], chunk[i].adler, chunk[i].rawLength);
+                }
+            }
+
+            for (int i = 0; i < files.length; i++) {
+                byte[] trailer = ByteBuffer.allocate(4).putInt((int) adler[i]).array();
+                writeChunk(channels[i], "IDAT", trailer, 4, crc("IDAT", trailer, 4));
+                writeChunk(channels[i], "IEND", new byte[0], 0, crc("IEND", new byte[0], 0));
+            }
+        } finally {
+            for (FileChannel channel : channels) if (channel != null) channel.close();
+        }
+    }
+
+    // Render rows [first, first + count) of every image, then filter and deflate each; runs on a pool thread
+    private static Chunk[] compress(Layers layers, int images, int width, int first, int count, boolean last) {
+        int[][] rgb = new int[images][count * width];
+        layers.render(first, count, rgb);
+        Chunk[] chunks = new Chunk[images];
+        for (int i = 0; i < images; i++) chunks[i] = compress(rgb[i], width, count, last);
+        return chunks;
+    }
+
+    // Filter and deflate count rendered rows
+    private static Chunk compress(int[] rgb, int width, int count, boolean last) {
+        int rowBytes = 1 + 3 * width;
+
+        // Filter Sub: each byte minus the same colour byte of the pixel to its left
+        byte[] raw = new byte[count * rowBytes];
+        for (int r = 0; r < count; r++) {
+            int at = r * rowBytes;
+            raw[at++] = 1;
+            int left = 0;
+            for (int x = 0; x < width; x++) {
+                int pixel = rgb[r * width + x];
+                raw[at++] = (byte) ((pixel >>> 16) - (left >>> 16));
+                raw[at++] = (byte) ((pixel >>> 8) - (left >>> 8));
+                raw[at++] = (byte) (pixel - left);
+                left = pixel;
+            }
+        }
+
+        Chunk chunk = new Chunk();
+        Adler32 adler = new Adler32();
+        adler.update(raw, 0, raw.length);
+        chunk.adler = adler.getValue();
+        chunk.rawLength = raw.length;
+
+        Deflater deflater = new Deflater(LEVEL, true);
+        try {
+            deflater.setInput(raw);
+            if (last) deflater.finish();
+            byte[] out = new byte[raw.length / 2 + 64];
+            int length = 0;
+            while (true) {
+                if (length == out.length) out = Arrays.copyOf(out, out.length * 2);
+                // A sync flush leaves the stream byte aligned with no final block, ready for the next chunk
+                length += deflater.deflate(out, length, out.length - length, last ? Deflater.NO_FLUSH : Deflater.SYNC_FLUSH);
+                if (last ? deflater.finished() : length < out.length) break;
+            }
+            chunk.data = out;
+            chunk.length = length;
+        } finally {
+            deflater.end();
+        }
+        chunk.crc = crc("IDAT", chunk.data, chunk.length);
+        return chunk;
+    }
+
+    // PNG chunk: length, type, data, CRC-32 of type and data
+    private static void writeChunk(FileChannel channel, String type, byte[] data, int length, long crc) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(8).putInt(length).put(type.getBytes(StandardCharsets.US_ASCII));
+        ByteBuffer tail = ByteBuffer.allocate(4).putInt((int) crc);
+        ByteBuffer[] parts = {head.flip(), ByteBuffer.wrap(data, 0, length), tail.flip()};
+        long remaining = 12L + length;
+        while (remaining > 0) remaining -= channel.write(parts);
+    }
+
+    private static long crc(String type, byte[] data, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(type.getBytes(StandardCharsets.US_ASCII));
+        crc.update(data, 0, length);
+        return crc.getValue();
+    }
+
+    // Adler-32 of the concatenation of two byte sequences, from the checksum of
+    // each and the length of the second (zlib's adler32_combine)
+    static long adler32Combine(long adler1, long adler2, long length2) {
+        long rem = length2 % ADLER_BASE;
+        long sum1 = adler1 & 0xffff;
+        long sum2 = (rem * sum1) % ADLER_BASE;
+        sum1 += (adler2 & 0xffff) + ADLER_BASE - 1;
+        sum2 += ((adler1 >>> 16) & 0xffff) + ((adler2 >>> 16) & 0xffff) + ADLER_BASE - rem;
+        if (sum1 >= ADLER_BASE) sum1 -= ADLER_BASE;
+        if (sum1 >= ADLER_BASE) sum1 -= ADLER_BASE;
+        if (sum2 >= 2L * ADLER_BASE) sum2 -= 2L * ADLER_BASE;
+        if (sum2 >= ADLER_BASE) sum2 -= ADLER_BASE;
+        return (sum2 << 16) | sum1;
+    }
+}
@@ -0,0 +1,220 @@
+/**
+ * RegionHuntEngine.java
+ *
+ * Spatial decomposition: the dungeon is cut into horizontal stripes of
+ * rows, one per worker thread, and a hunter is only ever climbed by the
+ * worker that owns the stripe it is standing in. The grid is row-major,
+ * so a stripe is a contiguous block of grid memory and each worker claims
+ * (writes the visitor of) cells in its own block only; the other engines
+ * let every worker write anywhere in the shared map.
+ *
+ * Each worker routes the starts of its share of the search indices to
+ * their owners. When a hunter steps across a stripe boundary it is handed
+ * off, with its index, position, step count and last mana value, through
+ * the new owner's mailbox (a lock-free ConcurrentLinkedQueue), and the
+ * owner carries on the climb from there. Neighbour probes may still read
+ * (and compute) mana just across a boundary. A worker serves its mailbox
+ * before routing more starts, and finishes once every search has ended.
+ *
+ * Only the owner claims cells in a stripe, so visits never race, even
+ * without --concurrent. The result is reduced with the usual rule
+ * (highest mana, then lowest search index).
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+public class RegionHuntEngine implements HuntEngine {
+
+    static final int ROUTE_BATCH = 64;          // starts routed between mailbox checks
+    private static final long IDLE_NANOS = 20_000;
+
+    private final int regions;
+    private final ExecutorService executor;
+    private final DungeonMapParallel dungeon;
+
+    // Statistics of the last run
+    private volatile long handOffs;
+    private volatile long routedStarts;
+
+    public RegionHuntEngine(DungeonMapParallel dungeon, int threads) {
+        this.dungeon = dungeon;
+        this.regions = Math.max(1, Math.min(threads, dungeon.getRows()));
+        // Every worker waits for the others to drain, so all of them must run at once
+        this.executor = Executors.newFixedThreadPool(regions);
+    }
+
+    // A hunter in transit between two stripes
+    private static final class HandOff {
+        final int index, row, col, steps, power;
+
+        HandOff(int index, int row, int col, int steps, int power) {
+            this.index = index;
+            this.row = row;
+            this.col = col;
+            this.steps = steps;
+            this.power = power;
+        }
+    }
+
+    @Override
+    public int[] run(SearchSource searches) {
+        Run run = new Run(searches);
+        List<Future<int[]>> futures = new ArrayList<>();
+        for (int w = 0; w < regions; w++) {
+            final int worker = w;
+            futures.add(executor.submit(() -> run.work(worker)));
+        }
+        int[] best = {Integer.MIN_VALUE, -1, -1, -1};
+        try {
+            for (Future<int[]> f : futures) best = HuntEngine.better(best, f.get());
+        } catch (InterruptedException e) {
+            run.failed = true;
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Hunt interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Hunt failed", e.getCause());
+        }
+        handOffs = run.handOffs.sum();
+        routedStarts = run.routedStarts.sum();
+        return best;
+    }
+
+    // Hunters that crossed a stripe boundary, and starts routed to another worker, in the last run
+    public long getHandOffs() {
+        return handOffs;
+    }
+
+    public long getRoutedStarts() {
+        return routedStarts;
+    }
+
+    public int getRegions() {
+        return regions;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdown();
+    }
+
+    // State shared by the workers of one run
+    private final class Run {
+        final SearchSource searches;
+        final HunterStore hunters;  // per-hunter results, if the source keeps them
+        final int stripe;           // rows per region
+        final List<ConcurrentLinkedQueue<HandOff>> mailboxes = new ArrayList<>();
+        final AtomicLong remaining;  // searches not yet finished
+        final LongAdder handOffs = new LongAdder();
+        final LongAdder routedStarts = new LongAdder();
+        volatile boolean failed;
+
+        Run(SearchSource searches) {
+            this.searches = searches;
+            this.hunters = searches instanceof HunterStore ? (HunterStore) searches : null;
+            this.stripe = (dungeon.getRows() + regions - 1) / regions;
+            for (int r = 0; r < regions; r++) mailboxes.add(new ConcurrentLinkedQueue<>());
+            this.remaining = new AtomicLong(searches.size());
+        }
+
+        int owner(int row) {
+            return row / stripe;
+        }
+
+        // Worker w: owns rows [w * stripe, (w + 1) * stripe) and routes the starts of
+        // search indices [from, to); returns its best {mana, index, row, col}
+        int[] work(int w) {
+            int numSearches = searches.size();
+            int from = (int) ((long) numSearches * w / regions);
+            int to = (int) ((long) numSearches * (w + 1) / regions);
+            Worker worker = new Worker(w);
+            try {
+                SearchSource.Cursor cursor = from < to ? searches.cursor(from) : null;
+                int next = from;
+                while (!failed) {
+                    // Hunters handed to us first, so neighbours are never held up
+                    HandOff h;
+                    boolean busy = false;
+                    while ((h = mailboxes.get(w).poll()) != null) {
+                        worker.climb(h.index, h.row, h.col, h.steps, h.power);
+                        busy = true;
+                    }
+                    if (next < to) {
+                        for (int end = Math.min(to, next + ROUTE_BATCH); next < end; next++) {
+                            HuntParallel start = cursor.next();
+                            int row = start.getPosRow(), col = start.getPosCol();
+                            int o = owner(row);
+                            if (o == w) {
+                                worker.climb(next, row, col, 0, Integer.MIN_VALUE);
+                            } else {
+                                mailboxes.get(o).offer(new HandOff(next, row, col, 0, Integer.MIN_VALUE));
+                                worker.routed++;
+                            }
+                        }
+                        continue;
+                    }
+                    if (remaining.get() == 0) break;
+                    if (!busy) LockSupport.parkNanos(IDLE_NANOS);
+                }
+            } catch (RuntimeException | Error e) {
+                failed = true;  // release the other workers
+                throw e;
+            } finally {
+                handOffs.add(worker.handOffs);
+                routedStarts.add(worker.routed);
+            }
+            return worker.best;
+        }
+
+        // One region's worker: climbs hunters while they stay in its stripe
+        private final class Worker {
+            final int lo, hi;  // owned rows [lo, hi)
+            final int[] best = {Integer.MIN_VALUE, -1, -1, -1};
+            final HuntParallel.Climb c = new HuntParallel.Climb();
+            long handOffs, routed;
+
+            Worker(int w) {
+                lo = w * stripe;
+                hi = Math.min(dungeon.getRows(), lo + stripe);
+            }
+
+            // The climb of HuntParallel.findManaPeak, passing the hunter on at a stripe boundary
+            void climb(int index, int posRow, int posCol, int count, int power) {
+                c.row = posRow;
+                c.col = posCol;
+                c.steps = count;
+                c.power = power;
+                HuntCounters.Cell cell = dungeon.getCounters().acquire();
+                int outcome = HuntParallel.climb(dungeon, index + 1, c, lo, hi, cell);
+                dungeon.getCounters().release(cell);
+                if (outcome == HuntParallel.LEFT_ROWS) {
+                    // Crossed into another stripe: its owner continues the climb
+                    mailboxes.get(owner(c.row)).offer(new HandOff(index, c.row, c.col, c.steps, c.power));
+                    handOffs++;
+                    return;
+                }
+                finish(index, c.row, c.col, c.steps, c.outcome == HuntParallel.VISITED, c.power);
+            }
+
+            private void finish(int index, int posRow, int posCol, int count, boolean stopped, int power) {
+                if (hunters != null) hunters.finish(index, posRow, posCol, count, stopped);
+                // Same rule as HuntEngine.better: higher mana, then lower search index
+                if (best[1] < 0 || power > best[0] || (power == best[0] && index < best[1])) {
+                    best[0] = power;
+                    best[1] = index;
+                    best[2] = posRow;
+                    best[3] = posCol;
+                }
+                remaining.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * SearchSource.java
+ *
+ * Where the searches of a run come from. Engines only ever ask for a
+ * contiguous index range, so a source can either hand out hunters that
+ * already exist (an array, as the original program built them) or derive
+ * each start position from its search index while the hunt runs, in which
+ * case nothing proportional to numSearches is built before the timer
+ * starts.
+ *
+ * Search i always runs as hunter id i + 1, like the original program.
+ * Sources (--starts):
+ *   legacy  SeededSearchSource: the exact java.util.Random sequence
+ *   keyed   KeyedSearchSource: start = hash(seed, index), O(1) setup
+ */
+
+public interface SearchSource {
+
+    // Number of searches in the run
+    int size();
+
+    // Hunters for searches from, from + 1, ... in index order. A streaming
+    // source may reuse one hunter, so a returned hunter is only valid until
+    // the next call to next().
+    Cursor cursor(int from);
+
+    interface Cursor {
+        HuntParallel next();
+    }
+
+    // Run searches [from, to) on the calling thread and return
+    // {maxValue, finderIndex, finderRow, finderColumn} (see HuntEngine)
+    default int[] hunt(int from, int to) {
+        int localMax = Integer.MIN_VALUE;
+        int finder = -1, finderRow = -1, finderColumn = -1;
+        Cursor cursor = cursor(from);
+        // Go through each search in assigned range
+        for (int i = from; i < to; i++) {
+            HuntParallel search = cursor.next();
+            int lm = search.findManaPeak();
+            // Keep track of which search found the highest mana peak, and where it stopped
+            if (lm > localMax) {
+                localMax = lm;
+                finder = i;
+                finderRow = search.getPosRow();
+                finderColumn = search.getPosCol();
+            }
+        }
+        return new int[]{localMax, finder, finderRow, finderColumn};
+    }
+
+    // The searches of an existing array
+    static SearchSource of(HuntParallel[] searches) {
+        return new SearchSource() {
+            @Override
+            public int size() {
+                return searches.length;
+            }
+
+            @Override
+            public Cursor cursor(int from) {
+                int[] next = {from};
+                return () -> searches[next[0]++];
+            }
+        };
+    }
+
+    // Searches [from, to) of another source, renumbered from 0. Hunters keep
+    // their ids in the full run; hunt() results carry the renumbered index.
+    static SearchSource range(SearchSource source, int from, int to) {
+        return new SearchSource() {
+            @Override
+            public int size() {
+                return to - from;
+            }
+
+            @Override
+            public Cursor cursor(int first) {
+                return source.cursor(from + first);
+            }
+
+            @Override
+            public int[] hunt(int lo, int hi) {
+                int[] result = source.hunt(from + lo, from + hi);
+                if (result[1] >= 0) result[1] -= from;
+                return result;
+            }
+        };
+    }
+
+    // Source selected on the command line
+    static SearchSource create(HuntOptions options, DungeonMapParallel dungeon, int numSearches, long seed) {
+        if (options.starts.equals("keyed")) return new KeyedSearchSource(dungeon, numSearches, seed);
+        return new SeededSearchSource(dungeon, numSearches, seed);
+    }
+}
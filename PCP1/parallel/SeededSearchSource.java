@@ -0,0 +1,96 @@
+/**
+ * SeededSearchSource.java
+ *
+ * The start positions of the original program - rand.nextInt(rows),
+ * rand.nextInt(columns) per search from one new Random(seed) - without
+ * building the hunters up front.
+ *
+ * java.util.Random is a 48-bit linear congruential generator whose
+ * algorithm is fixed by its specification, so it is replayed here on a
+ * plain long. nextInt(bound) occasionally rejects a draw, so the state at
+ * a given search index can't be computed by jumping ahead; instead one
+ * pass over the draws records the generator state every BLOCK searches.
+ * That pass costs a few nanoseconds per search and BLOCK times less
+ * memory than the hunters it replaces. A cursor starts from the nearest
+ * checkpoint and replays at most BLOCK - 1 searches to reach its index.
+ */
+
+public class SeededSearchSource implements SearchSource {
+
+    static final int BLOCK = 256;  // searches between checkpoints
+
+    // java.util.Random's generator constants
+    private static final long MULTIPLIER = 0x5DEECE66DL;
+    private static final long ADDEND = 0xBL;
+    private static final long MASK = (1L << 48) - 1;
+
+    private final DungeonMapParallel dungeon;
+    private final int numSearches;
+    private final int rows, columns;
+    private final long[] checkpoints;  // generator state before search b * BLOCK
+
+    public SeededSearchSource(DungeonMapParallel dungeon, int numSearches, long seed) {
+        this.dungeon = dungeon;
+        this.numSearches = numSearches;
+        this.rows = dungeon.getRows();
+        this.columns = dungeon.getColumns();
+        checkpoints = new long[(numSearches + BLOCK - 1) / BLOCK];
+        Generator rand = new Generator((seed ^ MULTIPLIER) & MASK);  // as new Random(seed)
+        for (int b = 0; b < checkpoints.length; b++) {
+            checkpoints[b] = rand.state;
+            rand.skip(Math.min(BLOCK, numSearches - b * BLOCK));
+        }
+    }
+
+    @Override
+    public int size() {
+        return numSearches;
+    }
+
+    @Override
+    public Cursor cursor(int from) {
+        Generator rand = new Generator(checkpoints[from / BLOCK]);
+        rand.skip(from % BLOCK);
+        HuntParallel hunter = new HuntParallel(0, 0, 0, dungeon);
+        int[] next = {from};
+        return () -> {
+            int r = rand.nextInt(rows);
+            int c = rand.nextInt(columns);
+            hunter.restart(++next[0], r, c);  // id = index + 1
+            return hunter;
+        };
+    }
+
+    // The java.util.Random algorithm on an unsynchronised state
+    private final class Generator {
+        long state;
+
+        Generator(long state) {
+            this.state = state;
+        }
+
+        int next(int bits) {
+            state = (state * MULTIPLIER + ADDEND) & MASK;
+            return (int) (state >>> (48 - bits));
+        }
+
+        // Same draws (including rejections) as Random.nextInt(bound)
+        int nextInt(int bound) {
+            int r = next(31);
+            int m = bound - 1;
+            if ((bound & m) == 0) return (int) ((bound * (long) r) >> 31);
+            for (int u = r; u - (r = u % bound) + m < 0; u = next(31)) {
+                // draw fell in the biased tail: draw again
+            }
+            return r;
+        }
+
+        // Advance past the start positions of `searches` searches
+        void skip(int searches) {
+            for (int i = 0; i < searches; i++) {
+                nextInt(rows);
+                nextInt(columns);
+            }
+        }
+    }
+}
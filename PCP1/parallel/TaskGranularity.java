@@ -0,0 +1,72 @@
+/**
+ * TaskGranularity.java
+ *
+ * Splitting policy for HuntTask. With a fixed threshold a task splits in
+ * half until it holds at most that many searches (the original behaviour,
+ * THRESHOLD = 16). In auto mode the decision adapts to the run:
+ *
+ *  - a task only splits while its own deque is nearly empty
+ *    (getSurplusQueuedTaskCount() <= SURPLUS), i.e. while idle workers may
+ *    still want to steal; otherwise it keeps the work and runs it in
+ *    leaf-sized chunks, re-checking between chunks;
+ *  - the leaf size targets TARGET_LEAF_NANOS of work, using a running
+ *    average of the observed cost per search, so cheap one-step hunts are
+ *    batched coarsely and long climbs finely;
+ *  - a leaf never exceeds 1/(LEAVES_PER_WORKER * pool size) of all
+ *    searches, so the tail of the run can still be balanced.
+ */
+
+import java.util.concurrent.ForkJoinTask;
+
+public class TaskGranularity {
+
+    public static final int DEFAULT_THRESHOLD = 16;  // the original fixed split size
+    static final int SURPLUS = 2;                    // queued tasks beyond which we stop splitting
+    static final long TARGET_LEAF_NANOS = 50_000;    // ~50 us of hunting per leaf
+    static final int LEAVES_PER_WORKER = 8;
+
+    private final int fixedThreshold;  // > 0: fixed mode, 0: auto
+    private final int maxLeaf;
+    private volatile double nanosPerSearch = -1;  // running average, -1 until measured
+
+    private TaskGranularity(int fixedThreshold, int numSearches, int parallelism) {
+        this.fixedThreshold = fixedThreshold;
+        this.maxLeaf = Math.max(1, numSearches / (LEAVES_PER_WORKER * Math.max(1, parallelism)));
+    }
+
+    // Always split down to `threshold` searches, like the original HuntTask
+    public static TaskGranularity fixed(int threshold) {
+        if (threshold <= 0) throw new IllegalArgumentException("Threshold must be greater than 0.");
+        return new TaskGranularity(threshold, 0, 1);
+    }
+
+    public static TaskGranularity auto(int numSearches, int parallelism) {
+        return new TaskGranularity(0, numSearches, parallelism);
+    }
+
+    public boolean isAuto() {
+        return fixedThreshold == 0;
+    }
+
+    // Largest range a task runs without splitting further
+    int leafSize() {
+        if (!isAuto()) return fixedThreshold;
+        double cost = nanosPerSearch;
+        if (cost <= 0) return Math.min(DEFAULT_THRESHOLD, maxLeaf);
+        long target = (long) (TARGET_LEAF_NANOS / cost);
+        return (int) Math.max(1, Math.min(maxLeaf, target));
+    }
+
+    // Whether a task holding more than leafSize() searches should split rather than run a chunk
+    boolean shouldSplit() {
+        return !isAuto() || ForkJoinTask.getSurplusQueuedTaskCount() <= SURPLUS;
+    }
+
+    // Feed back the measured cost of a leaf (racy updates only blur the average)
+    void record(int searches, long nanos) {
+        if (!isAuto() || searches == 0) return;
+        double sample = (double) nanos / searches;
+        double cost = nanosPerSearch;
+        nanosPerSearch = cost <= 0 ? sample : cost + (sample - cost) / 8;
+    }
+}
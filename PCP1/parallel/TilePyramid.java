@@ -0,0 +1,209 @@
+/**
+ * TilePyramid.java
+ *
+ * Zoomable export of the result maps (--tiles <dir>): a pyramid of
+ * TILE x TILE PNG tiles for the search map and the path map, and an
+ * index.html that pans and zooms over them with no other files needed.
+ *
+ * The finest level has one pixel per cell and the same orientation as
+ * visualisePowerMap; each level above it halves the resolution, up to
+ * level 0, where the whole dungeon fits in one tile. A pixel of a
+ * downsampled level takes the color of the highest evaluated cell of its
+ * block (for the path map, the highest visited cell), so peaks and thin
+ * hunter paths stay visible when zoomed out.
+ *
+ * Every tile is rendered straight from the grid and encoded on its own,
+ * as one task of a parallel stream over all tiles of all levels, so
+ * export scales with cores. Tiles in which no cell was evaluated (or, for
+ * the path map, visited) are not written; the viewer shows them black.
+ * --tile-levels <n> keeps only the n finest levels.
+ *
+ * Layout: <dir>/index.html, <dir>/<search|path>/<level>/<tx>_<ty>.png.
+ */
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+public class TilePyramid {
+
+    static final int TILE = 256;
+    private static final String[] LAYERS = {"search", "path"};
+
+    // Statistics of the last export
+    private final LongAdder written = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private int levels, lowestLevel;
+    private long millis;
+
+    // Write the pyramid of dungeon's maps to dir; keep (> 0) limits it to the finest levels
+    public void write(DungeonMapParallel dungeon, Path dir, int keep) throws IOException {
+        long start = System.nanoTime();
+        int width = dungeon.getRows();
+        int height = dungeon.getColumns();
+        int top = finestLevel(width, height);
+        levels = top + 1;
+        lowestLevel = keep > 0 ? Math.max(0, top - keep + 1) : 0;
+
+        DungeonMapParallel.Palette palette = dungeon.palette();
+        List<int[]> tiles = new ArrayList<>();  // {layer, level, tx, ty}
+        for (int layer = 0; layer < LAYERS.length; layer++) {
+            for (int level = lowestLevel; level <= top; level++) {
+                long span = (long) TILE << (top - level);  // cells per tile side
+                for (int tx = 0; tx * span < width; tx++) {
+                    for (int ty = 0; ty * span < height; ty++) tiles.add(new int[]{layer, level, tx, ty});
+                }
+                Files.createDirectories(dir.resolve(LAYERS[layer]).resolve(Integer.toString(level)));
+            }
+        }
+        try {
+            tiles.parallelStream().forEach(t -> writeTile(dungeon, palette, dir, top, t[0] == 1, t[1], t[2], t[3]));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        Files.write(dir.resolve("index.html"), viewer(dungeon, top, lowestLevel).getBytes(StandardCharsets.UTF_8));
+        millis = (System.nanoTime() - start) / 1_000_000;
+    }
+
+    // Level with one pixel per cell: level 0 is one tile, each level doubles the size
+    static int finestLevel(int width, int height) {
+        int level = 0;
+        while ((long) TILE << level < Math.max(width, height)) level++;
+        return level;
+    }
+
+    // Render one tile from the grid and encode it on the calling thread, unless it is empty
+    private void writeTile(DungeonMapParallel dungeon, DungeonMapParallel.Palette palette, Path dir, int top,
+                           boolean path, int level, int tx, int ty) {
+        DungeonGrid grid = dungeon.getGrid();
+        int width = dungeon.getRows();
+        int height = dungeon.getColumns();
+        int scale = 1 << (top - level);  // cells per pixel side
+        int[] rgb = new int[TILE * TILE];
+        boolean any = false;
+        for (int i = 0; i < TILE; i++) {
+            // Pixel column i covers grid rows [x0, x1)
+            long x0 = ((long) tx * TILE + i) * scale;
+            if (x0 >= width) break;
+            int x1 = (int) Math.min(width, x0 + scale);
+            for (int j = 0; j < TILE; j++) {
+                // Pixel row j covers image rows [p0, p0 + scale), which are flipped grid columns
+                long p0 = ((long) ty * TILE + j) * scale;
+                if (p0 >= height) break;
+                int y1 = (int) (height - p0);
+                int y0 = Math.max(0, y1 - scale);
+                int best = DungeonGrid.UNCOMPUTED;
+                for (int x = (int) x0; x < x1; x++) {
+                    for (int y = y0; y < y1; y++) {
+                        int value = grid.getMana(x, y);
+                        if (value > best && (!path || dungeon.visited(x, y))) best = value;
+                    }
+                }
+                if (best == DungeonGrid.UNCOMPUTED) continue;
+                rgb[j * TILE + i] = palette.color(best);
+                any = true;
+            }
+        }
+        if (!any) {
+            skipped.increment();
+            return;
+        }
+        Path file = dir.resolve(path ? "path" : "search").resolve(Integer.toString(level)).resolve(tx + "_" + ty + ".png");
+        try {
+            PngStreamWriter.write(file, TILE, TILE,
+                    (first, count, out) -> System.arraycopy(rgb, first * TILE, out, 0, count * TILE), Runnable::run, 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        written.increment();
+    }
+
+    // A self-contained pan and zoom viewer for the tiles
+    private static String viewer(DungeonMapParallel dungeon, int top, int low) {
+        int width = dungeon.getRows(), height = dungeon.getColumns();
+        String meta = String.format(Locale.ROOT,
+                "{width: %d, height: %d, tile: %d, low: %d, top: %d, xmin: %f, xstep: %f, ymin: %f, ystep: %f}",
+                width, height, TILE, low, top, dungeon.getXcoord(0), dungeon.getXcoord(1) - dungeon.getXcoord(0),
+                dungeon.getYcoord(0), dungeon.getYcoord(1) - dungeon.getYcoord(0));
+        return String.join("\n",
+                "<!DOCTYPE html>",
+                "<html><head><meta charset=\"utf-8\"><title>Dungeon map</title>",
+                "<style>",
+                "html, body { margin: 0; height: 100%; overflow: hidden; background: #000; color: #ddd; font: 13px sans-serif; }",
+                "#map { position: absolute; inset: 0; cursor: grab; }",
+                "#map img { position: absolute; image-rendering: pixelated; user-select: none; }",
+                "#bar { position: absolute; top: 8px; left: 8px; z-index: 1; padding: 6px; background: rgba(0, 0, 0, 0.7); }",
+                "</style></head><body>",
+                "<div id=\"map\"></div>",
+                "<div id=\"bar\"><button id=\"in\">+</button> <button id=\"out\">-</button>",
+                "<select id=\"layer\"><option>search</option><option>path</option></select> <span id=\"info\"></span></div>",
+                "<script>",
+                "const M = " + meta + ";",
+                "const map = document.getElementById('map'), info = document.getElementById('info');",
+                "let level = M.low, cx = M.width / 2, cy = M.height / 2;  // view centre in full-resolution pixels",
+                "const shown = new Map();",
+                "const scale = () => 2 ** (M.top - level);  // full-resolution pixels per screen pixel",
+                "function draw() {",
+                "  const s = scale(), w = map.clientWidth, h = map.clientHeight, layer = document.getElementById('layer').value;",
+                "  const left = cx / s - w / 2, topEdge = cy / s - h / 2, span = M.tile * s, wanted = new Set();",
+                "  for (let tx = Math.max(0, Math.floor(left / M.tile)); tx * span < M.width && tx * M.tile < left + w; tx++) {",
+                "    for (let ty = Math.max(0, Math.floor(topEdge / M.tile)); ty * span < M.height && ty * M.tile < topEdge + h; ty++) {",
+                "      const src = layer + '/' + level + '/' + tx + '_' + ty + '.png';",
+                "      wanted.add(src);",
+                "      let img = shown.get(src);",
+                "      if (!img) {",
+                "        img = document.createElement('img');",
+                "        img.onerror = () => img.style.visibility = 'hidden';  // empty tiles are not written",
+                "        img.src = src;",
+                "        shown.set(src, img);",
+                "        map.appendChild(img);",
+                "      }",
+                "      img.style.left = (tx * M.tile - left) + 'px';",
+                "      img.style.top = (ty * M.tile - topEdge) + 'px';",
+                "    }",
+                "  }",
+                "  for (const [src, img] of shown) if (!wanted.has(src)) { img.remove(); shown.delete(src); }",
+                "}",
+                "function zoom(by, sx, sy) {",
+                "  const next = Math.min(M.top, Math.max(M.low, level + by));",
+                "  const s = scale(), fx = cx + (sx - map.clientWidth / 2) * s, fy = cy + (sy - map.clientHeight / 2) * s;",
+                "  level = next;",
+                "  const t = scale();  // keep the point under the cursor in place",
+                "  cx = fx - (sx - map.clientWidth / 2) * t; cy = fy - (sy - map.clientHeight / 2) * t;",
+                "  draw();",
+                "}",
+                "let drag = null;",
+                "map.onmousedown = e => drag = [e.clientX, e.clientY];",
+                "window.onmouseup = () => drag = null;",
+                "window.onmousemove = e => {",
+                "  const s = scale(), px = cx + (e.clientX - map.clientWidth / 2) * s, py = cy + (e.clientY - map.clientHeight / 2) * s;",
+                "  const x = M.xmin + Math.floor(px) * M.xstep, y = M.ymin + (M.height - 1 - Math.floor(py)) * M.ystep;",
+                "  info.textContent = 'level ' + level + ' of ' + M.top + ', x=' + x.toFixed(1) + ' y=' + y.toFixed(1);",
+                "  if (!drag) return;",
+                "  cx -= (e.clientX - drag[0]) * s; cy -= (e.clientY - drag[1]) * s;",
+                "  drag = [e.clientX, e.clientY];",
+                "  draw();",
+                "};",
+                "map.onwheel = e => { e.preventDefault(); zoom(e.deltaY < 0 ? 1 : -1, e.clientX, e.clientY); };",
+                "document.getElementById('in').onclick = () => zoom(1, map.clientWidth / 2, map.clientHeight / 2);",
+                "document.getElementById('out').onclick = () => zoom(-1, map.clientWidth / 2, map.clientHeight / 2);",
+                "document.getElementById('layer').onchange = () => { shown.forEach(img => img.remove()); shown.clear(); draw(); };",
+                "window.onresize = draw;",
+                "draw();",
+                "</script></body></html>",
+                "");
+    }
+
+    // Statistics for the report
+    public long getWritten() { return written.sum(); }
+    public long getSkipped() { return skipped.sum(); }
+    public int getLevels() { return levels; }
+    public int getLowestLevel() { return lowestLevel; }
+    public long getMillis() { return millis; }
+}
@@ -0,0 +1,139 @@
+/**
+ * TiledDungeonGrid.java
+ *
+ * Sparse DungeonGrid that divides the dungeon into TILE x TILE blocks and
+ * only allocates a block the first time one of its cells is written.
+ * Hunters touch a fraction of the dungeon (about 60% of cells at density
+ * 0.2, far fewer at lower densities), so construction only allocates the
+ * tile table and resident memory follows the cells actually visited.
+ *
+ * Reads of a missing tile return UNCOMPUTED / UNVISITED without
+ * allocating anything. A new tile is fully initialised before it is
+ * published with a compare-and-set into the tile table, so concurrent
+ * first writers agree on a single tile and readers never see a
+ * half-initialised one; the losers' tiles are simply dropped.
+ */
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+public class TiledDungeonGrid implements DungeonGrid {
+
+    public static final int TILE_SHIFT = 6;   // 64 x 64 cells per tile
+    public static final int TILE = 1 << TILE_SHIFT;
+    private static final int TILE_MASK = TILE - 1;
+
+    private static final VarHandle TILES = MethodHandles.arrayElementVarHandle(Tile[].class);
+    private static final VarHandle CELL = MethodHandles.arrayElementVarHandle(int[].class);
+
+    // One block of cells, row-major within the tile
+    static final class Tile {
+        final int[] mana = new int[TILE * TILE];
+        final int[] visit = new int[TILE * TILE];
+
+        Tile() {
+            Arrays.fill(mana, UNCOMPUTED);
+            Arrays.fill(visit, UNVISITED);
+        }
+    }
+
+    private final int rows, columns;
+    private final int tileColumns;  // tiles per row of tiles
+    private final Tile[] tiles;     // null until first written
+
+    public TiledDungeonGrid(int rows, int columns) {
+        this.rows = rows;
+        this.columns = columns;
+        int tileRows = (rows + TILE_MASK) >> TILE_SHIFT;
+        this.tileColumns = (columns + TILE_MASK) >> TILE_SHIFT;
+        tiles = new Tile[tileRows * tileColumns];
+    }
+
+    private int tileIndex(int x, int y) {
+        return (x >> TILE_SHIFT) * tileColumns + (y >> TILE_SHIFT);
+    }
+
+    private static int cellIndex(int x, int y) {
+        return ((x & TILE_MASK) << TILE_SHIFT) | (y & TILE_MASK);
+    }
+
+    // The tile holding a cell, or null if nothing in it has been written yet
+    private Tile peek(int x, int y) {
+        return (Tile) TILES.getAcquire(tiles, tileIndex(x, y));
+    }
+
+    // The tile holding a cell, allocating and publishing it on first touch
+    private Tile touch(int x, int y) {
+        int t = tileIndex(x, y);
+        Tile tile = (Tile) TILES.getAcquire(tiles, t);
+        if (tile != null) return tile;
+        Tile fresh = new Tile();
+        Tile witness = (Tile) TILES.compareAndExchange(tiles, t, null, fresh);
+        return witness == null ? fresh : witness;
+    }
+
+    // Number of tiles allocated so far, and the total the dungeon is divided into
+    public int getAllocatedTiles() {
+        int count = 0;
+        for (int t = 0; t < tiles.length; t++) if (TILES.getAcquire(tiles, t) != null) count++;
+        return count;
+    }
+
+    public int getTileCount() {
+        return tiles.length;
+    }
+
+    @Override
+    public int getRows() {
+        return rows;
+    }
+
+    @Override
+    public int getColumns() {
+        return columns;
+    }
+
+    @Override
+    public int getMana(int x, int y) {
+        Tile tile = peek(x, y);
+        return tile == null ? UNCOMPUTED : tile.mana[cellIndex(x, y)];
+    }
+
+    @Override
+    public void setMana(int x, int y, int value) {
+        touch(x, y).mana[cellIndex(x, y)] = value;
+    }
+
+    @Override
+    public int getVisitor(int x, int y) {
+        Tile tile = peek(x, y);
+        return tile == null ? UNVISITED : tile.visit[cellIndex(x, y)];
+    }
+
+    @Override
+    public void setVisitor(int x, int y, int id) {
+        touch(x, y).visit[cellIndex(x, y)] = id;
+    }
+
+    @Override
+    public int getManaAcquire(int x, int y) {
+        Tile tile = peek(x, y);
+        return tile == null ? UNCOMPUTED : (int) CELL.getAcquire(tile.mana, cellIndex(x, y));
+    }
+
+    @Override
+    public void setManaRelease(int x, int y, int value) {
+        CELL.setRelease(touch(x, y).mana, cellIndex(x, y), value);
+    }
+
+    @Override
+    public boolean compareAndSetMana(int x, int y, int expected, int value) {
+        return CELL.compareAndSet(touch(x, y).mana, cellIndex(x, y), expected, value);
+    }
+
+    @Override
+    public boolean compareAndSetVisitor(int x, int y, int expected, int id) {
+        return CELL.compareAndSet(touch(x, y).visit, cellIndex(x, y), expected, id);
+    }
+}
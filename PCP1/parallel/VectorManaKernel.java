@@ -0,0 +1,72 @@
+/**
+ * VectorManaKernel.java
+ *
+ * SIMD version of ManaFunction.evaluate for a row segment, using the
+ * incubating Vector API. A row has a fixed x, so every x-only term is a
+ * broadcast scalar from ManaFunction's row tables, the lanes carry
+ * consecutive y cells and the y-only terms are vector loads from the
+ * column tables. The tail that does not fill a whole vector falls back
+ * to the scalar formula.
+ *
+ * Only referenced after ManaFunction.vectorAvailable() returned true, so
+ * the class is never loaded when the module is missing at run time.
+ * Compile and run with --add-modules jdk.incubator.vector (see Makefile).
+ */
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+final class VectorManaKernel {
+
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    private static final double HALF_PI = Math.PI / 2;
+
+    private VectorManaKernel() {}
+
+    static void evaluateRow(ManaFunction f, int x, int y0, int count, int[] out, int offset) {
+        final int lanes = SPECIES.length();
+        double[] manaLanes = new double[lanes];
+
+        // Terms that only depend on x come from the row tables and are broadcast;
+        // terms that only depend on y are loaded lane-wise from the column tables
+        double xc = f.xCoord[x];
+        double dxSquared = f.dxSquared[x];
+        double dx15Squared = f.dx15Squared[x];
+        double cosX5 = f.cosX5[x];
+        double sinX6 = f.sinX6[x];
+        double sinX = f.sinX[x];
+
+        int i = 0;
+        for (; i <= count - lanes; i += lanes) {
+            int y = y0 + i;
+            DoubleVector yc = DoubleVector.fromArray(SPECIES, f.yCoord, y);
+            DoubleVector distanceSquared = DoubleVector.fromArray(SPECIES, f.dySquared, y).add(dxSquared);
+
+            DoubleVector t1 = DoubleVector.fromArray(SPECIES, f.sinY5, y).add(xc).add(HALF_PI)
+                    .lanewise(VectorOperators.SIN).mul(2.0)
+                    .mul(yc.add(cosX5).add(HALF_PI).div(2.0).lanewise(VectorOperators.COS));
+            DoubleVector t2 = yc.mul(0.3).add(xc * 0.5).add(sinX6).add(HALF_PI)
+                    .lanewise(VectorOperators.SIN).mul(0.7);
+            DoubleVector t3 = DoubleVector.fromArray(SPECIES, f.cosY4, y)
+                    .add(yc.mul(0.8).neg().add(xc * 1.5))
+                    .lanewise(VectorOperators.SIN).mul(0.3);
+            DoubleVector t4 = DoubleVector.fromArray(SPECIES, f.logY, y);
+            DoubleVector t5 = yc.mul(xc).div(4.0).add(sinX)
+                    .lanewise(VectorOperators.SIN).mul(0.5);
+            DoubleVector t6 = DoubleVector.fromArray(SPECIES, f.sinY, y).add(yc.add(xc).div(5.0))
+                    .lanewise(VectorOperators.COS).mul(1.5);
+            DoubleVector t7 = DoubleVector.fromArray(SPECIES, f.dy10Squared, y).add(dx15Squared).mul(-0.03)
+                    .lanewise(VectorOperators.EXP).mul(3.0);
+            DoubleVector t8 = distanceSquared.mul(-0.01).lanewise(VectorOperators.EXP).mul(8.0);
+            DoubleVector t9 = DoubleVector.broadcast(SPECIES, 2.0).div(distanceSquared.mul(0.05).add(1.0));
+
+            // Same left-to-right summation order as the scalar formula
+            DoubleVector mana = t1.add(t2).add(t3).add(t4).add(t5).add(t6).add(t7).add(t8).add(t9);
+            mana.mul(DungeonMapParallel.PRECISION).intoArray(manaLanes, 0);
+            for (int l = 0; l < lanes; l++) out[offset + i + l] = (int) manaLanes[l];
+        }
+        // Scalar tail
+        for (; i < count; i++) out[offset + i] = f.evaluate(x, y0 + i);
+    }
+}
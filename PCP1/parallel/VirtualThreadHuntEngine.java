@@ -0,0 +1,53 @@
+/**
+ * VirtualThreadHuntEngine.java
+ *
+ * One virtual thread per batch of searches, through
+ * Executors.newVirtualThreadPerTaskExecutor(). That factory only exists
+ * from JDK 21 (or 19/20 with --enable-preview), so it is looked up
+ * reflectively; on older JDKs the engine falls back to a fixed pool of
+ * --threads platform threads that take the batches in turn (a thread per
+ * batch would start numSearches / BATCH threads at once), says so on
+ * stderr and in the report.
+ */
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class VirtualThreadHuntEngine extends ChunkedHuntEngine {
+
+    public static final int BATCH = 256;  // default searches per virtual thread
+
+    private final int batch;
+    private final int fallbackThreads;  // 0: running on virtual threads
+
+    public VirtualThreadHuntEngine(int batch, int threads) {
+        this(newVirtualExecutor(), batch, threads);
+    }
+
+    private VirtualThreadHuntEngine(ExecutorService virtual, int batch, int threads) {
+        super(virtual != null ? virtual : Executors.newFixedThreadPool(threads));
+        this.batch = batch;
+        this.fallbackThreads = virtual != null ? 0 : threads;
+        if (virtual == null)
+            System.err.println("Virtual threads not available on this JDK, using " + threads + " platform threads.");
+    }
+
+    // The virtual thread per task executor, or null before JDK 21
+    private static ExecutorService newVirtualExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    @Override
+    protected int chunkSize(int numSearches) {
+        return batch;
+    }
+
+    // Platform threads running the batches instead of virtual threads, 0 if none
+    public int getFallbackThreads() {
+        return fallbackThreads;
+    }
+}
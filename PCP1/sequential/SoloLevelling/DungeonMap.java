@@ -119,6 +119,29 @@ public class DungeonMap {
 		return fixedPoint;
 	}
 
+	// Neighbour offsets (dx, dy) and the matching directions, shared by every step
+	private static final int[][] DIRECTIONS = {
+	    {-1,  0}, // LEFT
+	    { 1,  0}, // RIGHT
+	    { 0, -1}, // UP
+	    { 0,  1}, // DOWN
+	    {-1, -1}, // UP_LEFT
+	    { 1, -1}, // UP_RIGHT
+	    {-1,  1}, // DOWN_LEFT
+	    { 1,  1}  // DOWN_RIGHT
+	};
+
+	private static final Hunt.Direction[] DIRECTION_ENUMS = {
+	    Hunt.Direction.LEFT,
+	    Hunt.Direction.RIGHT,
+	    Hunt.Direction.UP,
+	    Hunt.Direction.DOWN,
+	    Hunt.Direction.UP_LEFT,
+	    Hunt.Direction.UP_RIGHT,
+	    Hunt.Direction.DOWN_LEFT,
+	    Hunt.Direction.DOWN_RIGHT
+	};
+
 	//work out where to go next - move in direction of highest mana
 	 /**
      * Function to return the neighbouring cell direction with highest mana 
@@ -130,38 +153,15 @@ public class DungeonMap {
 		Hunt.Direction climbDirection = Hunt.Direction.STAY;
 	    int localMax = getManaLevel(x, y);
 
-	    // Define directions with (dx, dy)
-	    int[][] directions = {
-	        {-1,  0}, // LEFT
-	        { 1,  0}, // RIGHT
-	        { 0, -1}, // UP
-	        { 0,  1}, // DOWN
-	        {-1, -1}, // UP_LEFT
-	        { 1, -1}, // UP_RIGHT
-	        {-1,  1}, // DOWN_LEFT
-	        { 1,  1}  // DOWN_RIGHT
-	    };
-
-	    Hunt.Direction[] directionEnums = {
-	        Hunt.Direction.LEFT,
-	        Hunt.Direction.RIGHT,
-	        Hunt.Direction.UP,
-	        Hunt.Direction.DOWN,
-	        Hunt.Direction.UP_LEFT,
-	        Hunt.Direction.UP_RIGHT,
-	        Hunt.Direction.DOWN_LEFT,
-	        Hunt.Direction.DOWN_RIGHT
-	    };
-
-	    for (int i = 0; i < directions.length; i++) {
-	        int newX = x + directions[i][0];
-	        int newY = y + directions[i][1];
+	    for (int i = 0; i < DIRECTIONS.length; i++) {
+	        int newX = x + DIRECTIONS[i][0];
+	        int newY = y + DIRECTIONS[i][1];
 
 	        if (newX >= 0 && newX < rows && newY >= 0 && newY < columns) {
 	            int power = getManaLevel(newX, newY);
 	            if (power > localMax) {
 	                localMax = power;
-	                climbDirection = directionEnums[i];
+	                climbDirection = DIRECTION_ENUMS[i];
 	            }
 	        }
 	    }